@@ -0,0 +1,149 @@
+package com.example.datareader;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statistics of one channel over the whole session and over a sliding window.
+ *
+ * The window is split into panes, each with its own accumulator and sketch. A window query
+ * merges the panes that are still inside the window, so the window slides in steps of one pane
+ * and old values are dropped a pane at a time rather than one by one.
+ */
+public class ChannelStatistics {
+    /**
+     * Session and window statistics copied at one point in time. The window's pane sketches are
+     * only merged when {@link #getWindowSketch()} is called, outside whatever lock guarded the copy.
+     */
+    public static class Snapshot {
+        public final RunningStats sessionStats;
+        public final QuantileSketch sessionSketch;
+        public final RunningStats windowStats;
+        private final List<QuantileSketch> windowPanes;
+
+        Snapshot(RunningStats sessionStats, QuantileSketch sessionSketch, RunningStats windowStats,
+                 List<QuantileSketch> windowPanes) {
+            this.sessionStats = sessionStats;
+            this.sessionSketch = sessionSketch;
+            this.windowStats = windowStats;
+            this.windowPanes = windowPanes;
+        }
+
+        public QuantileSketch getWindowSketch() {
+            QuantileSketch window = new QuantileSketch(sessionSketch.getK());
+            for (QuantileSketch pane : windowPanes) {
+                window.merge(pane);
+            }
+            return window;
+        }
+    }
+
+    private final int sketchK;
+    private final long paneNanos;
+    private final RunningStats session = new RunningStats();
+    private final QuantileSketch sessionSketch;
+    private final RunningStats[] paneStats;
+    private final QuantileSketch[] paneSketches;
+    private final long[] paneIndexes;
+    private long latestPane = Long.MIN_VALUE;
+
+    public ChannelStatistics(int sketchK, long windowNanos, int paneCount) {
+        if (windowNanos <= 0 || paneCount <= 0 || windowNanos < paneCount) {
+            throw new IllegalArgumentException("Window must be positive and split into at least one pane");
+        }
+        this.sketchK = sketchK;
+        this.paneNanos = windowNanos / paneCount;
+        this.sessionSketch = new QuantileSketch(sketchK);
+        this.paneStats = new RunningStats[paneCount];
+        this.paneSketches = new QuantileSketch[paneCount];
+        this.paneIndexes = new long[paneCount];
+        for (int i = 0; i < paneCount; i++) {
+            paneStats[i] = new RunningStats();
+            paneSketches[i] = new QuantileSketch(sketchK);
+            paneIndexes[i] = Long.MIN_VALUE;
+        }
+    }
+
+    public void add(long timestampNanos, double value) {
+        session.add(value);
+        sessionSketch.add(value);
+
+        long pane = Math.floorDiv(timestampNanos, paneNanos);
+        if (latestPane != Long.MIN_VALUE && pane <= latestPane - paneStats.length) {
+            // Older than the window; it only counts towards the session.
+            return;
+        }
+        latestPane = Math.max(latestPane, pane);
+        int slot = (int) Math.floorMod(pane, (long) paneStats.length);
+        if (paneIndexes[slot] != pane) {
+            paneIndexes[slot] = pane;
+            paneStats[slot].clear();
+            paneSketches[slot].clear();
+        }
+        paneStats[slot].add(value);
+        paneSketches[slot].add(value);
+    }
+
+    public RunningStats getSessionStats() {
+        return session;
+    }
+
+    public QuantileSketch getSessionSketch() {
+        return sessionSketch;
+    }
+
+    public RunningStats getWindowStats() {
+        RunningStats window = new RunningStats();
+        for (int i = 0; i < paneStats.length; i++) {
+            if (isInWindow(i)) {
+                window.merge(paneStats[i]);
+            }
+        }
+        return window;
+    }
+
+    public QuantileSketch getWindowSketch() {
+        QuantileSketch window = new QuantileSketch(sketchK);
+        for (int i = 0; i < paneSketches.length; i++) {
+            if (isInWindow(i)) {
+                window.merge(paneSketches[i]);
+            }
+        }
+        return window;
+    }
+
+    /** Copies what a summary needs; the copy is cheap next to merging and sorting the sketches. */
+    public Snapshot snapshot() {
+        RunningStats sessionCopy = new RunningStats();
+        sessionCopy.merge(session);
+        List<QuantileSketch> windowPanes = new ArrayList<>(paneSketches.length);
+        for (int i = 0; i < paneSketches.length; i++) {
+            if (isInWindow(i)) {
+                windowPanes.add(paneSketches[i].copy());
+            }
+        }
+        return new Snapshot(sessionCopy, sessionSketch.copy(), getWindowStats(), windowPanes);
+    }
+
+    /** Folds another channel's session statistics into this one, e.g. from another device or session. */
+    public void mergeSession(RunningStats stats, QuantileSketch sketch) {
+        session.merge(stats);
+        sessionSketch.merge(sketch);
+    }
+
+    public void writeSessionTo(DataOutput out) throws IOException {
+        session.writeTo(out);
+        sessionSketch.writeTo(out);
+    }
+
+    public void readSessionFrom(DataInput in) throws IOException {
+        mergeSession(RunningStats.readFrom(in), QuantileSketch.readFrom(in));
+    }
+
+    private boolean isInWindow(int slot) {
+        return paneIndexes[slot] != Long.MIN_VALUE && paneIndexes[slot] > latestPane - paneStats.length;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.datareader;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decodes the notifications of one subscribed characteristic of one device and hands the samples
+ * to the registered listeners. Framed schemas go through a {@link FrameAssembler}; otherwise each
+ * notification is one sample.
+ */
+public class CharacteristicStream implements FrameAssembler.SampleSink {
+    /** Device clock observations the clock fit uses. */
+    public static final int CLOCK_SYNC_WINDOW = 64;
+    /** Observations needed before device timestamps are trusted. */
+    public static final int CLOCK_SYNC_MIN_OBSERVATIONS = 8;
+
+    public final String streamId;
+    public final PayloadSchema schema;
+
+    private final FrameAssembler assembler;
+    private final List<SampleListener> listeners;
+    private final double[] values;
+    private long malformedNotifications;
+
+    public CharacteristicStream(String deviceAddress, PayloadSchema schema, List<SampleListener> listeners) {
+        this.streamId = streamId(deviceAddress, schema);
+        this.schema = schema;
+        this.listeners = listeners;
+        this.values = new double[schema.getChannelCount()];
+        if (schema.framed) {
+            ClockSync clockSync = schema.clockNanosPerTick > 0
+                    ? new ClockSync(schema.clockNanosPerTick, CLOCK_SYNC_WINDOW, CLOCK_SYNC_MIN_OBSERVATIONS)
+                    : null;
+            assembler = new FrameAssembler(schema.getSampleSize(), schema.samplePeriodNanos,
+                    schema.maxFrameSize, clockSync, this);
+        } else {
+            assembler = null;
+        }
+    }
+
+    /** The id a device's stream of {@code schema} reports its samples under. */
+    public static String streamId(String deviceAddress, PayloadSchema schema) {
+        return deviceAddress + "/" + schema.name;
+    }
+
+    public void onNotification(byte[] value, long arrivalNanos) {
+        if (assembler != null) {
+            assembler.onNotification(value, arrivalNanos);
+        } else if (value == null || value.length < schema.getSampleSize()) {
+            malformedNotifications++;
+        } else {
+            onSample(value, 0, schema.getSampleSize(), arrivalNanos);
+        }
+    }
+
+    @Override
+    public void onSample(byte[] buffer, int offset, int length, long timestampNanos) {
+        schema.decode(buffer, offset, values);
+        for (SampleListener listener : listeners) {
+            listener.onSample(streamId, schema, timestampNanos, values);
+        }
+    }
+
+    /** The frame assembler for framed schemas, or null. */
+    public FrameAssembler getFrameAssembler() {
+        return assembler;
+    }
+
+    public long getMalformedNotifications() {
+        return assembler != null ? assembler.getMalformedNotifications() : malformedNotifications;
+    }
+
+    /** One line with the stream's frame loss and, if it carries device time, its clock fit. */
+    public String summary() {
+        if (assembler == null) {
+            return String.format(Locale.US, "%s: malformed %d", streamId, malformedNotifications);
+        }
+        SequenceTracker sequence = assembler.getSequenceTracker();
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "%s: frames %d, loss %.2f%% (%d lost, %d reordered, %d duplicate), malformed %d",
+                streamId, assembler.getFramesCompleted(), sequence.getLossRate() * 100, sequence.getLost(),
+                sequence.getReordered(), sequence.getDuplicates(), assembler.getMalformedNotifications()));
+        ClockSync clockSync = assembler.getClockSync();
+        if (clockSync != null && clockSync.isSynchronized()) {
+            sb.append(String.format(Locale.US, ", clock drift %.1f ppm, jitter %.1f us",
+                    clockSync.getDriftPpm(), clockSync.getResidualJitterNanos() / 1000));
+        } else if (clockSync != null) {
+            sb.append(", clock not synchronized");
+        }
+        return sb.toString();
+    }
+}
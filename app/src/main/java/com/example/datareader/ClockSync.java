@@ -0,0 +1,125 @@
+package com.example.datareader;
+
+/**
+ * Online estimate of the mapping from a sensor's tick counter to host time.
+ *
+ * Host time is fitted as a linear function of device ticks by least squares over a sliding
+ * window of (ticks, hostNanos) observations, giving an offset and a drift against the nominal
+ * tick period. The RMS of the fit residuals is reported as the residual jitter; it includes the
+ * radio and scheduling delay variation that the fit cannot explain.
+ */
+public class ClockSync {
+    private final double nominalNanosPerTick;
+    private final int minObservations;
+    private final long[] ticks;
+    private final long[] hostNanos;
+    private int count;
+    private int next;
+
+    private boolean hasOrigin = false;
+    private long originTicks;
+    private long originNanos;
+
+    private double slope;
+    private double intercept;
+    private double residualJitterNanos;
+
+    public ClockSync(double nominalNanosPerTick, int windowSize, int minObservations) {
+        if (nominalNanosPerTick <= 0) {
+            throw new IllegalArgumentException("nominalNanosPerTick must be positive: " + nominalNanosPerTick);
+        }
+        if (windowSize < 2 || minObservations < 2 || minObservations > windowSize) {
+            throw new IllegalArgumentException("Need 2 <= minObservations <= windowSize, got "
+                    + minObservations + " and " + windowSize);
+        }
+        this.nominalNanosPerTick = nominalNanosPerTick;
+        this.minObservations = minObservations;
+        this.ticks = new long[windowSize];
+        this.hostNanos = new long[windowSize];
+        this.slope = nominalNanosPerTick;
+    }
+
+    public synchronized void addObservation(long deviceTicks, long observedHostNanos) {
+        if (!hasOrigin) {
+            hasOrigin = true;
+            originTicks = deviceTicks;
+            originNanos = observedHostNanos;
+        }
+        ticks[next] = deviceTicks;
+        hostNanos[next] = observedHostNanos;
+        next = (next + 1) % ticks.length;
+        if (count < ticks.length) {
+            count++;
+        }
+        fit();
+    }
+
+    public synchronized boolean isSynchronized() {
+        return count >= minObservations;
+    }
+
+    public synchronized long toHostNanos(long deviceTicks) {
+        return originNanos + Math.round(intercept + slope * (deviceTicks - originTicks));
+    }
+
+    /** Host time, in nanoseconds, that corresponds to device tick zero. */
+    public synchronized long getOffsetNanos() {
+        return toHostNanos(0);
+    }
+
+    public synchronized double getNanosPerTick() {
+        return slope;
+    }
+
+    /** Device clock rate error against the nominal tick period, in parts per million. */
+    public synchronized double getDriftPpm() {
+        return (slope / nominalNanosPerTick - 1.0) * 1e6;
+    }
+
+    public synchronized double getResidualJitterNanos() {
+        return residualJitterNanos;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        next = 0;
+        hasOrigin = false;
+        slope = nominalNanosPerTick;
+        intercept = 0;
+        residualJitterNanos = 0;
+    }
+
+    private void fit() {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < count; i++) {
+            meanX += ticks[i] - originTicks;
+            meanY += hostNanos[i] - originNanos;
+        }
+        meanX /= count;
+        meanY /= count;
+
+        double sxx = 0;
+        double sxy = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = ticks[i] - originTicks - meanX;
+            double dy = hostNanos[i] - originNanos - meanY;
+            sxx += dx * dx;
+            sxy += dx * dy;
+        }
+        slope = sxx > 0 ? sxy / sxx : nominalNanosPerTick;
+        intercept = meanY - slope * meanX;
+
+        if (count <= 2) {
+            residualJitterNanos = 0;
+            return;
+        }
+        double sumSquares = 0;
+        for (int i = 0; i < count; i++) {
+            double residual = hostNanos[i] - originNanos
+                    - (intercept + slope * (ticks[i] - originTicks));
+            sumSquares += residual * residual;
+        }
+        residualJitterNanos = Math.sqrt(sumSquares / (count - 2));
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.datareader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Queues configuration and control writes to the peripheral and issues them one at a time, since
+ * the GATT client allows a single outstanding operation.
+ *
+ * Bulk commands go out as write-without-response. Consecutive bulk commands are packed into one
+ * write up to the ATT payload size ({@code MTU - 3}), so they must be self-delimiting for the
+ * firmware. When the peripheral uses credit-based flow control, each such write spends one credit
+ * and writing pauses until {@link #addCredits} grants more. Critical settings go out as
+ * acknowledged writes on their own; their round-trip time (queue to write response) is recorded.
+ *
+ * A write the stack refuses to start, e.g. because another GATT operation is outstanding, keeps
+ * its place at the head of the queue and is retried with exponential backoff, up to
+ * {@link #MAX_ATTEMPTS} attempts; its credit is refunded in between. A write whose completion
+ * does not arrive within {@link #WRITE_TIMEOUT_MILLIS} fails so the queue moves on. Each command
+ * can carry a {@link Callback}; commands packed into one write share its result.
+ */
+public class CommandChannel {
+    public interface Transport {
+        /**
+         * Starts a characteristic write and returns whether it was accepted. Completion is reported
+         * through {@link CommandChannel#onWriteComplete}.
+         */
+        boolean write(byte[] value, boolean acknowledged);
+    }
+
+    public interface Scheduler {
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    public interface Callback {
+        /** Called once the command was written, or failed after retries, a timeout or close. */
+        void onResult(boolean success);
+    }
+
+    public static final int DEFAULT_MTU = 23;
+    public static final int ATT_HEADER_SIZE = 3;
+    /** Longest acknowledged value; the stack splits it into prepared writes if needed. */
+    public static final int MAX_ACKNOWLEDGED_LENGTH = 512;
+    /** Pass as {@code initialCredits} when the peripheral does not grant credits. */
+    public static final int NO_FLOW_CONTROL = -1;
+    public static final int MAX_ATTEMPTS = 4;
+    /** Delay before the first retry of a refused write; it doubles with each further attempt. */
+    public static final long RETRY_DELAY_MILLIS = 20;
+    public static final long WRITE_TIMEOUT_MILLIS = 2000;
+
+    private static class Write {
+        final boolean acknowledged;
+        final long queuedNanos;
+        final List<Callback> callbacks = new ArrayList<>(1);
+        byte[] data;
+        int length;
+        int attempts;
+        boolean succeeded;
+
+        Write(byte[] command, boolean acknowledged, long queuedNanos, Callback callback) {
+            this.data = command.clone();
+            this.length = command.length;
+            this.acknowledged = acknowledged;
+            this.queuedNanos = queuedNanos;
+            addCallback(callback);
+        }
+
+        void append(byte[] command, Callback callback) {
+            if (length + command.length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + command.length));
+            }
+            System.arraycopy(command, 0, data, length, command.length);
+            length += command.length;
+            addCallback(callback);
+        }
+
+        private void addCallback(Callback callback) {
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+        }
+    }
+
+    private final Transport transport;
+    private final Scheduler scheduler;
+    private final boolean flowControlled;
+    private final ArrayDeque<Write> queue = new ArrayDeque<>();
+    private final List<Write> finished = new ArrayList<>();
+    private Write inFlight;
+    private boolean retryScheduled = false;
+    private boolean ready = false;
+    private int mtu = DEFAULT_MTU;
+    private int credits;
+
+    private long commandsQueued;
+    private long writesCompleted;
+    private long writesFailed;
+    private long writesRetried;
+    private long writesTimedOut;
+    private long bytesWritten;
+    private long firstWriteNanos = -1;
+    private long lastCompletionNanos;
+    private final RunningStats roundTripNanos = new RunningStats();
+
+    public CommandChannel(Transport transport, Scheduler scheduler, int initialCredits) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.flowControlled = initialCredits != NO_FLOW_CONTROL;
+        this.credits = Math.max(0, initialCredits);
+    }
+
+    public void send(byte[] command) {
+        send(command, null);
+    }
+
+    /** Queues a bulk command, packing it into the previous one when they fit in a single write. */
+    public void send(byte[] command, Callback callback) {
+        synchronized (this) {
+            int maxPayload = mtu - ATT_HEADER_SIZE;
+            if (command.length == 0 || command.length > maxPayload) {
+                throw new IllegalArgumentException("Command length " + command.length
+                        + " must be between 1 and " + maxPayload + " bytes");
+            }
+            commandsQueued++;
+            Write last = queue.peekLast();
+            if (last != null && !last.acknowledged && last.length + command.length <= maxPayload) {
+                last.append(command, callback);
+            } else {
+                queue.add(new Write(command, false, System.nanoTime(), callback));
+            }
+            pump();
+        }
+        deliverResults();
+    }
+
+    public void sendAcknowledged(byte[] command) {
+        sendAcknowledged(command, null);
+    }
+
+    /** Queues a command that must be confirmed by the peripheral, e.g. a sample-rate change. */
+    public void sendAcknowledged(byte[] command, Callback callback) {
+        synchronized (this) {
+            if (command.length == 0 || command.length > MAX_ACKNOWLEDGED_LENGTH) {
+                throw new IllegalArgumentException("Command length " + command.length
+                        + " must be between 1 and " + MAX_ACKNOWLEDGED_LENGTH + " bytes");
+            }
+            commandsQueued++;
+            queue.add(new Write(command, true, System.nanoTime(), callback));
+            pump();
+        }
+        deliverResults();
+    }
+
+    /**
+     * Called from {@code onCharacteristicWrite}. A completion that arrives after its write timed
+     * out is ignored.
+     */
+    public void onWriteComplete(boolean success) {
+        synchronized (this) {
+            Write write = inFlight;
+            if (write == null) {
+                return;
+            }
+            inFlight = null;
+            long now = System.nanoTime();
+            if (success) {
+                writesCompleted++;
+                bytesWritten += write.length;
+                lastCompletionNanos = now;
+                if (write.acknowledged) {
+                    roundTripNanos.add(now - write.queuedNanos);
+                }
+                finish(write, true);
+            } else {
+                writesFailed++;
+                finish(write, false);
+            }
+            pump();
+        }
+        deliverResults();
+    }
+
+    public void addCredits(int granted) {
+        synchronized (this) {
+            credits += granted;
+            pump();
+        }
+        deliverResults();
+    }
+
+    /** Applies the negotiated MTU to later coalescing. */
+    public synchronized void setMtu(int mtu) {
+        this.mtu = Math.max(DEFAULT_MTU, mtu);
+    }
+
+    /** Writing starts once the channel is ready, i.e. after the other setup operations finished. */
+    public void setReady(boolean ready) {
+        synchronized (this) {
+            this.ready = ready;
+            pump();
+        }
+        deliverResults();
+    }
+
+    /** Whether a write has been started and not completed yet. */
+    public synchronized boolean isBusy() {
+        return inFlight != null;
+    }
+
+    /** Fails queued commands, e.g. after the connection is lost. */
+    public void close() {
+        synchronized (this) {
+            ready = false;
+            retryScheduled = false;
+            if (inFlight != null) {
+                writesFailed++;
+                finish(inFlight, false);
+                inFlight = null;
+            }
+            for (Write write : queue) {
+                finish(write, false);
+            }
+            queue.clear();
+        }
+        deliverResults();
+    }
+
+    public synchronized int getQueuedWrites() {
+        return queue.size();
+    }
+
+    public synchronized int getCredits() {
+        return credits;
+    }
+
+    public synchronized long getCommandsQueued() {
+        return commandsQueued;
+    }
+
+    public synchronized long getWritesCompleted() {
+        return writesCompleted;
+    }
+
+    public synchronized long getWritesFailed() {
+        return writesFailed;
+    }
+
+    /** Writes the stack refused to start that were queued for another attempt. */
+    public synchronized long getWritesRetried() {
+        return writesRetried;
+    }
+
+    public synchronized long getWritesTimedOut() {
+        return writesTimedOut;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Payload bytes confirmed per second between the first write and the latest completion. */
+    public synchronized double getThroughputBytesPerSecond() {
+        if (firstWriteNanos < 0 || lastCompletionNanos <= firstWriteNanos) {
+            return 0.0;
+        }
+        return bytesWritten / ((lastCompletionNanos - firstWriteNanos) / 1e9);
+    }
+
+    /** Round-trip times of acknowledged writes, in nanoseconds. */
+    public synchronized RunningStats getRoundTripStats() {
+        RunningStats copy = new RunningStats();
+        copy.merge(roundTripNanos);
+        return copy;
+    }
+
+    private void pump() {
+        while (ready && inFlight == null && !retryScheduled && !queue.isEmpty()) {
+            Write next = queue.peek();
+            boolean spendsCredit = !next.acknowledged && flowControlled;
+            if (spendsCredit) {
+                if (credits == 0) {
+                    return;
+                }
+                credits--;
+            }
+            queue.poll();
+            byte[] value = next.length == next.data.length ? next.data : Arrays.copyOf(next.data, next.length);
+            if (firstWriteNanos < 0) {
+                firstWriteNanos = System.nanoTime();
+            }
+            next.attempts++;
+            inFlight = next;
+            if (transport.write(value, next.acknowledged)) {
+                int attempt = next.attempts;
+                scheduler.schedule(() -> onTimeout(next, attempt), WRITE_TIMEOUT_MILLIS);
+                return;
+            }
+            inFlight = null;
+            if (spendsCredit) {
+                credits++;
+            }
+            if (next.attempts < MAX_ATTEMPTS) {
+                writesRetried++;
+                queue.addFirst(next);
+                retryScheduled = true;
+                scheduler.schedule(this::onRetry, RETRY_DELAY_MILLIS << (next.attempts - 1));
+                return;
+            }
+            writesFailed++;
+            finish(next, false);
+        }
+    }
+
+    private void onRetry() {
+        synchronized (this) {
+            if (!retryScheduled) {
+                return;
+            }
+            retryScheduled = false;
+            pump();
+        }
+        deliverResults();
+    }
+
+    private void onTimeout(Write write, int attempt) {
+        synchronized (this) {
+            if (inFlight != write || write.attempts != attempt) {
+                return;
+            }
+            inFlight = null;
+            writesTimedOut++;
+            writesFailed++;
+            finish(write, false);
+            pump();
+        }
+        deliverResults();
+    }
+
+    private void finish(Write write, boolean success) {
+        write.succeeded = success;
+        if (!write.callbacks.isEmpty()) {
+            finished.add(write);
+        }
+    }
+
+    // Callbacks run outside the lock so they may send further commands or take other locks.
+    private void deliverResults() {
+        List<Write> done;
+        synchronized (this) {
+            if (finished.isEmpty()) {
+                return;
+            }
+            done = new ArrayList<>(finished);
+            finished.clear();
+        }
+        for (Write write : done) {
+            for (Callback callback : write.callbacks) {
+                callback.onResult(write.succeeded);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.datareader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes CSV rows straight into a byte buffer. Numbers are formatted digit by digit instead of
+ * through {@code String.format} or {@code Double.toString}, so writing a value allocates nothing.
+ * Doubles are written in fixed point with up to {@code decimals} fraction digits and trailing
+ * zeros dropped; NaN becomes an empty field.
+ */
+public class CsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_NUMBER_LENGTH = 32;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L
+    };
+
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+    private final int decimals;
+    // Beyond this the scaled value would lose integer precision in a double.
+    private final double maxFixedPoint;
+    private boolean rowStarted = false;
+    private long bytesWritten;
+
+    public CsvWriter(WritableByteChannel out, int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("decimals must be between 0 and " + (POWERS_OF_TEN.length - 1));
+        }
+        this.out = out;
+        this.decimals = decimals;
+        this.maxFixedPoint = (double) (1L << 53) / POWERS_OF_TEN[decimals];
+    }
+
+    public CsvWriter field(String value) throws IOException {
+        separator();
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        byte[] bytes = (quote ? '"' + value.replace("\"", "\"\"") + '"' : value)
+                .getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            drain();
+        }
+        if (bytes.length > buffer.remaining()) {
+            drain(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+        return this;
+    }
+
+    public CsvWriter field(long value) throws IOException {
+        separator();
+        ensureSpace(MAX_NUMBER_LENGTH);
+        putLong(value);
+        return this;
+    }
+
+    public CsvWriter field(double value) throws IOException {
+        separator();
+        if (Double.isNaN(value)) {
+            return this;
+        }
+        ensureSpace(MAX_NUMBER_LENGTH);
+        if (Double.isInfinite(value) || Math.abs(value) >= maxFixedPoint) {
+            buffer.put(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return this;
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            buffer.put((byte) '-');
+        }
+        putLong(scaled / scale);
+        long fraction = scaled % scale;
+        if (fraction != 0) {
+            int length = decimals;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                length--;
+            }
+            buffer.put((byte) '.');
+            for (int i = length - 1; i >= 0; i--) {
+                digits[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            buffer.put(digits, 0, length);
+        }
+        return this;
+    }
+
+    public CsvWriter emptyField() throws IOException {
+        separator();
+        return this;
+    }
+
+    public void endRow() throws IOException {
+        ensureSpace(1);
+        buffer.put((byte) '\n');
+        rowStarted = false;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    public void flush() throws IOException {
+        drain();
+    }
+
+    /** Flushes buffered rows; the underlying channel is left open. */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void separator() throws IOException {
+        if (rowStarted) {
+            ensureSpace(1);
+            buffer.put((byte) ',');
+        }
+        rowStarted = true;
+    }
+
+    private void putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            buffer.put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, start, digits.length - start);
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        drain(buffer);
+        buffer.clear();
+    }
+
+    private void drain(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            bytesWritten += out.write(source);
+        }
+    }
+}
@@ -10,12 +10,21 @@ import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 import androidx.core.content.ContextCompat;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 
 public class CustomBluetooth {
@@ -41,16 +50,42 @@ public class CustomBluetooth {
     private final MutableLiveData<Boolean> _isConnected = new MutableLiveData<>();
     public final LiveData<Boolean> isConnected = _isConnected;
 
-    private final MutableLiveData<byte[]> _receivedData = new MutableLiveData<>();
-    public final LiveData<byte[]> receivedData = _receivedData;
+    private final MutableLiveData<SensorPacket> _receivedData = new MutableLiveData<>();
+    public final LiveData<SensorPacket> receivedData = _receivedData;
+
+    private SchemaRegistry schemaRegistry;
+    private volatile Map<UUID, CharacteristicStream> streams = Collections.emptyMap();
+    private final IngestPipeline pipeline = new IngestPipeline(1, STAGE_PARALLELISM, STAGE_PARALLELISM, 1,
+            PIPELINE_QUEUE_CAPACITY, PIPELINE_MAX_BATCH_SIZE);
+    private final Queue<BluetoothGattDescriptor> pendingDescriptorWrites = new ArrayDeque<>();
+    private BluetoothGattCharacteristic subscribedCharacteristic;
+    private volatile CommandChannel commandChannel;
+    private BluetoothGattCharacteristic commandCharacteristic;
+    private UUID creditCharacteristicUuid;
 
-    private static final UUID TARGET_SERVICE_UUID = UUID.fromString("ea07beb5-483e-36e1-4688-b7f5ea61914b");
-    private static final UUID TARGET_CHARACTERISTIC_UUID = UUID.fromString("4f4bc5c9-c331-8fcc-459e-1fb54ffac201");
     private static final UUID CCCD_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+    private static final int REQUESTED_MTU = 247;
+    // Decode and process run one thread per two cores, up to four; ingest and persist stay single
+    // threaded since they only route notifications and append to one session file.
+    private static final int STAGE_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int PIPELINE_QUEUE_CAPACITY = 4096;
+    private static final int PIPELINE_MAX_BATCH_SIZE = 64;
 
 
     private CustomBluetooth(Context context) {
         this.context = context.getApplicationContext();
+        this.schemaRegistry = loadSchemaRegistry();
+    }
+
+    private SchemaRegistry loadSchemaRegistry() {
+        try (InputStream in = context.getAssets().open(SchemaRegistry.ASSET_NAME)) {
+            SchemaRegistry registry = SchemaRegistry.load(in);
+            Log.i("Bluetooth", "Loaded " + registry.getSchemas().size() + " characteristic schemas.");
+            return registry;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e("Bluetooth", "Failed to load " + SchemaRegistry.ASSET_NAME + ", no characteristics will be subscribed.", e);
+            return new SchemaRegistry(Collections.emptyList());
+        }
     }
 
     public static synchronized CustomBluetooth getInstance(Context context) {
@@ -65,6 +100,45 @@ public class CustomBluetooth {
         this.listener = listener;
     }
 
+    public void setSchemaRegistry(SchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    public SchemaRegistry getSchemaRegistry() {
+        return schemaRegistry;
+    }
+
+    /** Adds a listener that runs on the pipeline's process stage, e.g. fusion or statistics. */
+    public void addSampleListener(SampleListener listener) {
+        pipeline.addProcessor(listener);
+    }
+
+    public void removeSampleListener(SampleListener listener) {
+        pipeline.removeProcessor(listener);
+    }
+
+    /** Adds a listener that runs on the pipeline's persist stage, after the processors. */
+    public void addSampleSink(SampleListener sink) {
+        pipeline.addSink(sink);
+    }
+
+    public void removeSampleSink(SampleListener sink) {
+        pipeline.removeSink(sink);
+    }
+
+    public IngestPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public Collection<CharacteristicStream> getStreams() {
+        return streams.values();
+    }
+
+    /** Channel for configuration and control writes, or null while no command characteristic is connected. */
+    public CommandChannel getCommandChannel() {
+        return commandChannel;
+    }
+
     public void setBluetoothAdapter(BluetoothAdapter adapter) {
         if (adapter != null) {
             this.bluetoothAdapter = adapter;
@@ -212,6 +286,8 @@ public class CustomBluetooth {
                     Log.i("BluetoothGatt", "Successfully disconnected from " + device.getName());
                     _isConnected.postValue(false);
                     stopPolling();
+                    closeStreams();
+                    closeCommandChannel();
                     gatt.close();
                     bluetoothGatt = null;
                 }
@@ -220,6 +296,8 @@ public class CustomBluetooth {
                 _isConnected.postValue(false);
                 gatt.close();
                 stopPolling();
+                closeStreams();
+                closeCommandChannel();
                 bluetoothGatt = null;
             }
             }
@@ -229,84 +307,105 @@ public class CustomBluetooth {
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 for(BluetoothGattService service : gatt.getServices())
                 {
-                    Log.i("BluetoothGatt", "Services discovered." + service.getUuid() + " : " + TARGET_SERVICE_UUID);
+                    Log.i("BluetoothGatt", "Services discovered." + service.getUuid());
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+                    Log.e("BluetoothGatt", "Permission denied to subscribe to characteristics.");
+                    return;
                 }
-                BluetoothGattService service = gatt.getService(TARGET_SERVICE_UUID);
-                if (service != null) {
-                    for(BluetoothGattCharacteristic charec : service.getCharacteristics())
-                    {
-                        Log.i("BluetoothGatt", "Characteristics discovered." + charec.getUuid() + " : " + TARGET_CHARACTERISTIC_UUID);
+                Map<UUID, CharacteristicStream> subscribed = new HashMap<>();
+                pendingDescriptorWrites.clear();
+                subscribedCharacteristic = null;
+                for (PayloadSchema schema : schemaRegistry.getSchemas()) {
+                    BluetoothGattService service = gatt.getService(schema.serviceUuid);
+                    if (service == null) {
+                        Log.i("BluetoothGatt", "Service not found for schema " + schema.name + ": " + schema.serviceUuid);
+                        continue;
                     }
-                    BluetoothGattCharacteristic characteristic = service.getCharacteristic(TARGET_CHARACTERISTIC_UUID);
+                    BluetoothGattCharacteristic characteristic = service.getCharacteristic(schema.characteristicUuid);
                     if (characteristic == null) {
-                        return;
-                    }
-                    int properties = characteristic.getProperties();
-                    if ((properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0 &&
-                            (properties & BluetoothGattCharacteristic.PROPERTY_INDICATE) == 0) {
-                        Log.e("BluetoothGatt", "Characteristic does not support notifications or indications!");
-                        return;
-                    }
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                        return;
+                        Log.i("BluetoothGatt", "Characteristic not found for schema " + schema.name + ": " + schema.characteristicUuid);
+                        continue;
                     }
-                    boolean success = gatt.setCharacteristicNotification(characteristic, true);
-                    if (success) {
-                        Log.i("BluetoothGatt", "Successfully enabled local notifications for characteristic.");
-                    } else {
-                        Log.e("BluetoothGatt", "Failed to enable local notifications for characteristic.");
-                    }
-//                    properties = characteristic.getProperties();
-//                    if ((properties & BluetoothGattCharacteristic.PROPERTY_WRITE) == 0 &&
-//                            (properties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) == 0) {
-//                        Log.w("BluetoothGatt", "Characteristic is not writable. Assuming no start command is needed.");
-//                        return;
-//                    }
-//
-//                    byte[] startCommand = new byte[]{(byte) 0x01};
-//
-//                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-//                        int result = gatt.writeCharacteristic(characteristic, startCommand, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
-//                        Log.i("BluetoothGatt", "Initiating characteristic write with result code: " + result);
-//                    } else {
-//                        characteristic.setValue(startCommand);
-//                        boolean writeSuccess = gatt.writeCharacteristic(characteristic);
-//                        if (writeSuccess) {
-//                            Log.i("BluetoothGatt", "Successfully initiated characteristic write.");
-//                        } else {
-//                            Log.e("BluetoothGatt", "Failed to initiate characteristic write.");
-//                        }
-//                    }
-                    BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CCCD_UUID);
-                    if (descriptor == null) {
-                        Log.w("BluetoothGatt", "CCCD descriptor not found. Peripheral might start notifying anyway.");
-                        return;
+                    if (enableNotifications(gatt, characteristic)) {
+                        subscribed.put(schema.characteristicUuid,
+                                pipeline.openStream(gatt.getDevice().getAddress(), schema));
+                        if (subscribedCharacteristic == null) {
+                            subscribedCharacteristic = characteristic;
+                        }
                     }
+                }
+                streams = subscribed;
+                Log.i("BluetoothGatt", "Subscribed to " + subscribed.size() + " of " + schemaRegistry.getSchemas().size() + " registered characteristics.");
+                setUpCommandChannel(gatt);
+                // A larger MTU lets the command channel coalesce more per write; the descriptor
+                // writes continue from onMtuChanged.
+                if (!gatt.requestMtu(REQUESTED_MTU)) {
+                    Log.w("BluetoothGatt", "Failed to request MTU " + REQUESTED_MTU);
+                    writeNextDescriptor(gatt);
+                }
+            }
+        }
 
-                    descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                        Log.e("BluetoothGatt", "Permission denied to write descriptor.");
-                        return;
-                    }
-                    boolean writeSuccess = gatt.writeDescriptor(descriptor);
-                    if (writeSuccess) {
-                        Log.i("BluetoothGatt", "Writing to CCCD descriptor to enable notifications...");
-                    } else {
-                        Log.e("BluetoothGatt", "Failed to initiate descriptor write.");
-                    }
-                    startPolling(gatt,characteristic);
-                } else {
-                    Log.i("BluetoothGatt", "Service not found.");
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                Log.i("BluetoothGatt", "MTU changed to " + mtu);
+                CommandChannel channel = commandChannel;
+                if (channel != null) {
+                    channel.setMtu(mtu);
+                }
+            } else {
+                Log.w("BluetoothGatt", "MTU request failed, status: " + status);
+            }
+            writeNextDescriptor(gatt);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            CommandChannel channel = commandChannel;
+            BluetoothGattCharacteristic target = commandCharacteristic;
+            if (channel != null && target != null && characteristic.getUuid().equals(target.getUuid())) {
+                if (status != BluetoothGatt.GATT_SUCCESS) {
+                    Log.e("BluetoothGatt", "Command write failed, status: " + status);
                 }
+                channel.onWriteComplete(status == BluetoothGatt.GATT_SUCCESS);
             }
         }
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic,
                                             byte[] value) {
-            Log.i("BluetoothGatt", "Characteristic changed." + characteristic.getUuid() +" : " +
-            value);
-            if (TARGET_CHARACTERISTIC_UUID.equals(characteristic.getUuid())) {
-                _receivedData.postValue(value);
+            onNotification(characteristic, value, SystemClock.elapsedRealtimeNanos());
+        }
+
+        // Called instead of the overload above below API 33. The characteristic's value is
+        // overwritten by the next notification, so the pipeline gets a copy.
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            long arrivalNanos = SystemClock.elapsedRealtimeNanos();
+            byte[] value = characteristic.getValue();
+            if (value != null) {
+                onNotification(characteristic, value.clone(), arrivalNanos);
+            }
+        }
+
+        private void onNotification(BluetoothGattCharacteristic characteristic, byte[] value, long arrivalNanos) {
+            if (Log.isLoggable("BluetoothGatt", Log.VERBOSE)) {
+                Log.v("BluetoothGatt", "Characteristic changed." + characteristic.getUuid() + " : "
+                        + value.length + " bytes");
+            }
+            CommandChannel channel = commandChannel;
+            if (channel != null && characteristic.getUuid().equals(creditCharacteristicUuid)) {
+                if (value.length > 0) {
+                    channel.addCredits(value[0] & 0xFF);
+                }
+                return;
+            }
+            if (streams.containsKey(characteristic.getUuid())) {
+                SensorPacket packet = new SensorPacket(characteristic.getUuid(), value, arrivalNanos);
+                pipeline.submit(packet);
+                _receivedData.postValue(packet);
             }
         }
 
@@ -319,25 +418,173 @@ public class CustomBluetooth {
             } else {
                 Log.e("BluetoothGatt", "FAILURE: Failed to write descriptor, status: " + status);
             }
+            writeNextDescriptor(gatt);
         }
 
         public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            long arrivalNanos = SystemClock.elapsedRealtimeNanos();
+            pollingHandler.post(CustomBluetooth.this::finishPollRead);
             if (status == BluetoothGatt.GATT_SUCCESS) {
-                if (TARGET_CHARACTERISTIC_UUID.equals(characteristic.getUuid())) {
+                if (streams.containsKey(characteristic.getUuid())) {
                     byte[] data = characteristic.getValue();
                     Log.i("BluetoothGatt", "Manual read successful. Data: " + data);
 
-                    _receivedData.postValue(data);
+                    _receivedData.postValue(new SensorPacket(characteristic.getUuid(), data, arrivalNanos));
                 }
             } else {
                 Log.e("BluetoothGatt", "onCharacteristicRead failed with status: " + status);
             }
         }
     };
+
+    private boolean enableNotifications(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+        int properties = characteristic.getProperties();
+        if ((properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) == 0 &&
+                (properties & BluetoothGattCharacteristic.PROPERTY_INDICATE) == 0) {
+            Log.e("BluetoothGatt", "Characteristic " + characteristic.getUuid() + " does not support notifications or indications!");
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        boolean success = gatt.setCharacteristicNotification(characteristic, true);
+        if (success) {
+            Log.i("BluetoothGatt", "Successfully enabled local notifications for characteristic " + characteristic.getUuid());
+        } else {
+            Log.e("BluetoothGatt", "Failed to enable local notifications for characteristic " + characteristic.getUuid());
+            return false;
+        }
+        BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CCCD_UUID);
+        if (descriptor == null) {
+            Log.w("BluetoothGatt", "CCCD descriptor not found. Peripheral might start notifying anyway.");
+            return true;
+        }
+        descriptor.setValue((properties & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0
+                ? BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
+                : BluetoothGattDescriptor.ENABLE_INDICATION_VALUE);
+        pendingDescriptorWrites.add(descriptor);
+        return true;
+    }
+
+    // The GATT client allows one outstanding operation, so CCCD writes go out one at a time and
+    // the next is started from onDescriptorWrite.
+    private void writeNextDescriptor(BluetoothGatt gatt) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            Log.e("BluetoothGatt", "Permission denied to write descriptor.");
+            pendingDescriptorWrites.clear();
+            return;
+        }
+        BluetoothGattDescriptor descriptor;
+        while ((descriptor = pendingDescriptorWrites.poll()) != null) {
+            if (gatt.writeDescriptor(descriptor)) {
+                Log.i("BluetoothGatt", "Writing to CCCD descriptor of " + descriptor.getCharacteristic().getUuid() + " to enable notifications...");
+                return;
+            }
+            Log.e("BluetoothGatt", "Failed to initiate descriptor write.");
+        }
+        CommandChannel channel = commandChannel;
+        if (channel != null) {
+            channel.setReady(true);
+        }
+        if (subscribedCharacteristic != null) {
+            startPolling(gatt, subscribedCharacteristic);
+        }
+    }
+
+    private void setUpCommandChannel(BluetoothGatt gatt) {
+        closeCommandChannel();
+        SchemaRegistry.CommandEndpoint endpoint = schemaRegistry.getCommandEndpoint();
+        if (endpoint == null) {
+            return;
+        }
+        BluetoothGattService service = gatt.getService(endpoint.serviceUuid);
+        BluetoothGattCharacteristic characteristic = service == null ? null : service.getCharacteristic(endpoint.characteristicUuid);
+        if (characteristic == null) {
+            Log.i("BluetoothGatt", "Command characteristic not found: " + endpoint.characteristicUuid);
+            return;
+        }
+        int properties = characteristic.getProperties();
+        if ((properties & BluetoothGattCharacteristic.PROPERTY_WRITE) == 0 &&
+                (properties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) == 0) {
+            Log.w("BluetoothGatt", "Characteristic is not writable. Commands cannot be sent.");
+            return;
+        }
+        int credits = endpoint.initialCredits;
+        if (endpoint.creditCharacteristicUuid != null) {
+            BluetoothGattCharacteristic creditCharacteristic = service.getCharacteristic(endpoint.creditCharacteristicUuid);
+            if (creditCharacteristic != null && enableNotifications(gatt, creditCharacteristic)) {
+                creditCharacteristicUuid = endpoint.creditCharacteristicUuid;
+            } else {
+                Log.w("BluetoothGatt", "Credit characteristic unavailable, commands are not flow controlled.");
+                credits = CommandChannel.NO_FLOW_CONTROL;
+            }
+        }
+        commandCharacteristic = characteristic;
+        commandChannel = new CommandChannel((value, acknowledged) -> writeCommand(gatt, characteristic, value, acknowledged),
+                handler::postDelayed, credits);
+    }
+
+    private boolean writeCommand(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] value, boolean acknowledged) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && ContextCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            Log.e("BluetoothGatt", "Permission denied to write command.");
+            return false;
+        }
+        int writeType = !acknowledged && (characteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0
+                ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            int result = gatt.writeCharacteristic(characteristic, value, writeType);
+            if (result != BluetoothStatusCodes.SUCCESS) {
+                Log.e("BluetoothGatt", "Failed to initiate command write, result code: " + result);
+                return false;
+            }
+            return true;
+        }
+        characteristic.setWriteType(writeType);
+        characteristic.setValue(value);
+        if (!gatt.writeCharacteristic(characteristic)) {
+            Log.e("BluetoothGatt", "Failed to initiate command write.");
+            return false;
+        }
+        return true;
+    }
+
+    private void closeStreams() {
+        for (CharacteristicStream stream : streams.values()) {
+            Log.i("BluetoothGatt", "Stream closed: " + stream.summary());
+        }
+        streams = Collections.emptyMap();
+        pipeline.closeStreams();
+    }
+
+    private void closeCommandChannel() {
+        CommandChannel channel = commandChannel;
+        if (channel == null) {
+            return;
+        }
+        channel.close();
+        RunningStats roundTrip = channel.getRoundTripStats();
+        Log.i("BluetoothGatt", "Command channel closed: " + channel.getBytesWritten() + " bytes in "
+                + channel.getWritesCompleted() + " writes (" + channel.getWritesFailed() + " failed, "
+                + channel.getWritesRetried() + " retried, " + channel.getWritesTimedOut() + " timed out), "
+                + Math.round(channel.getThroughputBytesPerSecond()) + " B/s, acknowledged round trip mean "
+                + Math.round(roundTrip.getMean() / 1e6) + " ms over " + roundTrip.getCount() + " writes.");
+        commandChannel = null;
+        commandCharacteristic = null;
+        creditCharacteristicUuid = null;
+    }
+
     private final Handler pollingHandler = new Handler(Looper.getMainLooper());
     private BluetoothGattCharacteristic pollingCharacteristic;
     private boolean isPolling = false;
+    private boolean pollReadInFlight = false;
     private static final int POLLING_INTERVAL_MS = 3000;
+    private static final int POLL_READ_TIMEOUT_MS = 2000;
+
+    private final Runnable pollReadTimeout = () -> {
+        Log.w("BluetoothGatt", "Polling: read did not complete, resuming commands.");
+        finishPollRead();
+    };
 
     private final Runnable pollingRunnable = new Runnable() {
         @Override
@@ -349,10 +596,26 @@ public class CustomBluetooth {
                     return;
                 }
 
-                if (bluetoothGatt.readCharacteristic(pollingCharacteristic)) {
+                // Reads share the single GATT operation slot with command writes: hold the
+                // command channel for the read, and skip this poll if a write is outstanding.
+                CommandChannel channel = commandChannel;
+                if (channel != null) {
+                    channel.setReady(false);
+                }
+                if (pollReadInFlight || (channel != null && channel.isBusy())) {
+                    Log.d("BluetoothGatt", "Polling: GATT busy, skipping this read.");
+                    if (channel != null && !pollReadInFlight) {
+                        channel.setReady(true);
+                    }
+                } else if (bluetoothGatt.readCharacteristic(pollingCharacteristic)) {
                     Log.d("BluetoothGatt", "Polling: Initiating characteristic read.");
+                    pollReadInFlight = true;
+                    pollingHandler.postDelayed(pollReadTimeout, POLL_READ_TIMEOUT_MS);
                 } else {
                     Log.e("BluetoothGatt", "Polling: Failed to initiate characteristic read.");
+                    if (channel != null) {
+                        channel.setReady(true);
+                    }
                 }
 
                 pollingHandler.postDelayed(this, POLLING_INTERVAL_MS);
@@ -375,5 +638,18 @@ public class CustomBluetooth {
             pollingHandler.removeCallbacks(pollingRunnable);
             pollingCharacteristic = null;
         }
+        pollingHandler.post(this::finishPollRead);
+    }
+
+    private void finishPollRead() {
+        if (!pollReadInFlight) {
+            return;
+        }
+        pollReadInFlight = false;
+        pollingHandler.removeCallbacks(pollReadTimeout);
+        CommandChannel channel = commandChannel;
+        if (channel != null) {
+            channel.setReady(true);
+        }
     }
 }
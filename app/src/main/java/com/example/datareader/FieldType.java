@@ -0,0 +1,54 @@
+package com.example.datareader;
+
+import java.util.Locale;
+
+/** Wire types a payload field can have, with their size in bytes. */
+public enum FieldType {
+    INT8(1),
+    UINT8(1),
+    INT16(2),
+    UINT16(2),
+    INT32(4),
+    UINT32(4),
+    FLOAT32(4);
+
+    public final int size;
+
+    FieldType(int size) {
+        this.size = size;
+    }
+
+    public double read(byte[] buffer, int offset, boolean littleEndian) {
+        switch (this) {
+            case INT8:
+                return buffer[offset];
+            case UINT8:
+                return buffer[offset] & 0xFF;
+            case INT16:
+                return (short) readBits(buffer, offset, 2, littleEndian);
+            case UINT16:
+                return readBits(buffer, offset, 2, littleEndian);
+            case INT32:
+                return (int) readBits(buffer, offset, 4, littleEndian);
+            case UINT32:
+                return readBits(buffer, offset, 4, littleEndian);
+            case FLOAT32:
+                return Float.intBitsToFloat((int) readBits(buffer, offset, 4, littleEndian));
+            default:
+                throw new IllegalStateException("Unhandled field type " + this);
+        }
+    }
+
+    public static FieldType parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static long readBits(byte[] buffer, int offset, int length, boolean littleEndian) {
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            int index = littleEndian ? offset + length - 1 - i : offset + i;
+            bits = (bits << 8) | (buffer[index] & 0xFFL);
+        }
+        return bits;
+    }
+}
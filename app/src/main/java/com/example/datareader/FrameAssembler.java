@@ -0,0 +1,262 @@
+package com.example.datareader;
+
+/**
+ * Turns the notifications of one characteristic into individual samples.
+ *
+ * Every notification starts with a two byte header: a flags byte and an 8-bit sequence number
+ * that increments once per notification. A frame runs from a notification flagged START to the
+ * next one flagged END (a single notification may carry both) and its payload is a whole number
+ * of fixed-size samples.
+ *
+ * A START notification flagged DEVICE_TIME carries the sensor's 32-bit tick counter for the
+ * frame's last sample, little endian, right after the header. Those ticks train the optional
+ * {@link ClockSync}, and once it is synchronized the last sample is stamped with the mapped
+ * device time. Otherwise it gets the arrival time of the frame's last notification. Earlier
+ * samples are stamped back from there using the nominal sample period. Several notifications
+ * often arrive together in one connection event, so a frame stamped back from its arrival can
+ * overlap the previous one; its samples are then stamped forward from the previous frame's last
+ * sample instead, which keeps a stream's timestamps increasing. If a sensor runs fast, forward
+ * stamping gets ahead of the arrival times; once it is more than a frame ahead the spacing is
+ * shortened by {@link #SLEW_DIVISOR a percent} until it catches up.
+ *
+ * Single-notification frames are handed to the sink as slices of the incoming array without
+ * copying; only frames split across notifications are reassembled into an internal buffer. The
+ * sink must not keep the array after {@link SampleSink#onSample} returns.
+ */
+public class FrameAssembler {
+    public static final int HEADER_SIZE = 2;
+    public static final int FLAG_START = 0x80;
+    public static final int FLAG_END = 0x40;
+    public static final int FLAG_DEVICE_TIME = 0x20;
+    public static final int DEVICE_TIME_SIZE = 4;
+    /** Forward-stamped samples that run ahead are spaced {@code period - period / SLEW_DIVISOR} apart. */
+    public static final int SLEW_DIVISOR = 100;
+
+    private static final int INITIAL_FRAME_CAPACITY = 256;
+
+    public interface SampleSink {
+        void onSample(byte[] buffer, int offset, int length, long timestampNanos);
+    }
+
+    private final int sampleSize;
+    private final long samplePeriodNanos;
+    private final int maxFrameSize;
+    private final SampleSink sink;
+    private final SequenceTracker sequenceTracker = new SequenceTracker();
+    private final ClockSync clockSync;
+
+    private byte[] frameBuffer = new byte[INITIAL_FRAME_CAPACITY];
+    private int frameLength;
+    private boolean inFrame = false;
+    private boolean frameHasDeviceTime = false;
+    private long frameDeviceTicks;
+
+    private boolean hasDeviceTicks = false;
+    private long lastRawTicks;
+    private long tickWraps;
+
+    private boolean hasEmitted = false;
+    private long lastEmittedNanos;
+
+    private long framesCompleted;
+    private long framesDropped;
+    private long fragmentsDiscarded;
+    private long malformedNotifications;
+    private long samplesEmitted;
+
+    public FrameAssembler(int sampleSize, long samplePeriodNanos, int maxFrameSize, SampleSink sink) {
+        this(sampleSize, samplePeriodNanos, maxFrameSize, null, sink);
+    }
+
+    public FrameAssembler(int sampleSize, long samplePeriodNanos, int maxFrameSize,
+                          ClockSync clockSync, SampleSink sink) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("sampleSize must be positive: " + sampleSize);
+        }
+        if (maxFrameSize < sampleSize) {
+            throw new IllegalArgumentException("maxFrameSize must hold at least one sample: " + maxFrameSize);
+        }
+        this.sampleSize = sampleSize;
+        this.samplePeriodNanos = samplePeriodNanos;
+        this.maxFrameSize = maxFrameSize;
+        this.clockSync = clockSync;
+        this.sink = sink;
+    }
+
+    public void onNotification(byte[] value, long arrivalNanos) {
+        if (value == null || value.length < HEADER_SIZE) {
+            malformedNotifications++;
+            return;
+        }
+        int flags = value[0] & 0xFF;
+        // Nominal time this notification's payload covers, so long dropouts are not mistaken for old traffic.
+        long expectedIntervalNanos = samplePeriodNanos * (value.length - HEADER_SIZE) / sampleSize;
+        int order = sequenceTracker.track(value[1] & 0xFF, arrivalNanos, expectedIntervalNanos);
+        if (order == SequenceTracker.DUPLICATE || order == SequenceTracker.REORDERED) {
+            // The frame this belonged to was already completed or abandoned.
+            fragmentsDiscarded++;
+            return;
+        }
+        if (order == SequenceTracker.GAP && inFrame) {
+            dropFrame();
+        }
+
+        boolean start = (flags & FLAG_START) != 0;
+        boolean end = (flags & FLAG_END) != 0;
+        int payloadOffset = HEADER_SIZE;
+
+        if (start) {
+            if (inFrame) {
+                dropFrame();
+            }
+            frameHasDeviceTime = (flags & FLAG_DEVICE_TIME) != 0;
+            if (frameHasDeviceTime) {
+                if (value.length < HEADER_SIZE + DEVICE_TIME_SIZE) {
+                    malformedNotifications++;
+                    return;
+                }
+                frameDeviceTicks = unwrapTicks(readUInt32(value, HEADER_SIZE));
+                payloadOffset += DEVICE_TIME_SIZE;
+            }
+            if (end) {
+                framesCompleted++;
+                emitSamples(value, payloadOffset, value.length - payloadOffset, arrivalNanos);
+                return;
+            }
+            inFrame = true;
+            frameLength = 0;
+        } else if (!inFrame) {
+            // Continuation of a frame whose start was lost.
+            fragmentsDiscarded++;
+            return;
+        }
+
+        if (!append(value, payloadOffset, value.length - payloadOffset)) {
+            dropFrame();
+            return;
+        }
+        if (end) {
+            inFrame = false;
+            framesCompleted++;
+            emitSamples(frameBuffer, 0, frameLength, arrivalNanos);
+        }
+    }
+
+    public void reset() {
+        sequenceTracker.reset();
+        inFrame = false;
+        frameLength = 0;
+        hasDeviceTicks = false;
+        tickWraps = 0;
+        hasEmitted = false;
+        if (clockSync != null) {
+            clockSync.reset();
+        }
+        framesCompleted = 0;
+        framesDropped = 0;
+        fragmentsDiscarded = 0;
+        malformedNotifications = 0;
+        samplesEmitted = 0;
+    }
+
+    public SequenceTracker getSequenceTracker() {
+        return sequenceTracker;
+    }
+
+    public ClockSync getClockSync() {
+        return clockSync;
+    }
+
+    public long getFramesCompleted() {
+        return framesCompleted;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getFragmentsDiscarded() {
+        return fragmentsDiscarded;
+    }
+
+    public long getMalformedNotifications() {
+        return malformedNotifications;
+    }
+
+    public long getSamplesEmitted() {
+        return samplesEmitted;
+    }
+
+    private boolean append(byte[] source, int offset, int length) {
+        int required = frameLength + length;
+        if (required > maxFrameSize) {
+            return false;
+        }
+        if (required > frameBuffer.length) {
+            int capacity = frameBuffer.length;
+            while (capacity < required) {
+                capacity *= 2;
+            }
+            byte[] grown = new byte[Math.min(capacity, maxFrameSize)];
+            System.arraycopy(frameBuffer, 0, grown, 0, frameLength);
+            frameBuffer = grown;
+        }
+        System.arraycopy(source, offset, frameBuffer, frameLength, length);
+        frameLength = required;
+        return true;
+    }
+
+    private void dropFrame() {
+        inFrame = false;
+        frameLength = 0;
+        framesDropped++;
+    }
+
+    private long unwrapTicks(long rawTicks) {
+        if (hasDeviceTicks && rawTicks < lastRawTicks && lastRawTicks - rawTicks > 0x80000000L) {
+            tickWraps++;
+        }
+        hasDeviceTicks = true;
+        lastRawTicks = rawTicks;
+        return (tickWraps << 32) + rawTicks;
+    }
+
+    private static long readUInt32(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFFL)
+                | (buffer[offset + 1] & 0xFFL) << 8
+                | (buffer[offset + 2] & 0xFFL) << 16
+                | (buffer[offset + 3] & 0xFFL) << 24;
+    }
+
+    private void emitSamples(byte[] buffer, int offset, int length, long arrivalNanos) {
+        long lastSampleNanos = arrivalNanos;
+        if (frameHasDeviceTime && clockSync != null) {
+            clockSync.addObservation(frameDeviceTicks, arrivalNanos);
+            if (clockSync.isSynchronized()) {
+                lastSampleNanos = clockSync.toHostNanos(frameDeviceTicks);
+            }
+        }
+        if (length % sampleSize != 0) {
+            malformedNotifications++;
+        }
+        int count = length / sampleSize;
+        if (count == 0) {
+            return;
+        }
+        long spacing = samplePeriodNanos;
+        long firstSampleNanos = lastSampleNanos - (count - 1) * spacing;
+        if (hasEmitted && firstSampleNanos < lastEmittedNanos + spacing) {
+            long lead = lastEmittedNanos + count * spacing - lastSampleNanos;
+            if (lead > count * samplePeriodNanos) {
+                spacing -= samplePeriodNanos / SLEW_DIVISOR;
+            }
+            firstSampleNanos = lastEmittedNanos + spacing;
+        }
+        for (int i = 0; i < count; i++) {
+            sink.onSample(buffer, offset + i * sampleSize, sampleSize, firstSampleNanos + i * spacing);
+        }
+        hasEmitted = true;
+        lastEmittedNanos = firstSampleNanos + (count - 1) * spacing;
+        samplesEmitted += count;
+    }
+}
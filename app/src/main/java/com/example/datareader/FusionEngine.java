@@ -0,0 +1,374 @@
+package com.example.datareader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the sample streams of several sensors into one time-ordered stream and resamples them
+ * onto a common time grid.
+ *
+ * Each stream is buffered until every other stream has caught up with it, so merged samples come
+ * out in timestamp order. A stream that falls more than {@code maxLatencyNanos} behind the newest
+ * data stops holding the others back; its samples that then arrive behind the watermark (the last
+ * merged timestamp) are dropped and counted as late. A sample that arrives out of order within
+ * its own stream but not behind the watermark is sorted into the stream's pending samples and
+ * counted as reordered. From then on that stream holds the merge back by the largest such
+ * displacement seen, capped at the maximum latency, so later reordering of the same extent is
+ * absorbed instead of arriving behind the watermark.
+ *
+ * Grid rows are emitted once the merged stream is {@code maxSkewNanos} past the grid point. A row
+ * holds every stream's channels in registration order. With
+ * {@link Interpolation#ZERO_ORDER_HOLD} a channel holds the stream's last sample at or before the
+ * grid point; with {@link Interpolation#LINEAR} it is interpolated between the samples on either
+ * side, or taken from the one neighbour available. Only samples within {@code maxSkewNanos} of
+ * the grid point count, and a channel without one is NaN.
+ */
+public class FusionEngine implements SampleListener {
+    public enum Interpolation {
+        ZERO_ORDER_HOLD,
+        LINEAR
+    }
+
+    public interface Listener {
+        /** Called in timestamp order across all streams. {@code values} is reused. */
+        void onMergedSample(int streamIndex, String streamId, long timestampNanos, double[] values);
+
+        /** Called once per grid point. {@code row} is reused; see {@link #getColumnNames()}. */
+        void onRow(long timestampNanos, double[] row);
+    }
+
+    private final long gridPeriodNanos;
+    private final long maxSkewNanos;
+    private final long maxLatencyNanos;
+    private final Interpolation interpolation;
+    private final int bufferCapacity;
+    private final Listener listener;
+
+    private final Map<String, Stream> streamsById = new HashMap<>();
+    private final List<Stream> streams = new ArrayList<>();
+    private final List<String> columnNames = new ArrayList<>();
+    private double[] row = new double[0];
+
+    private long newestNanos = Long.MIN_VALUE;
+    private long watermarkNanos = Long.MIN_VALUE;
+    private boolean gridStarted = false;
+    private long nextGridNanos;
+
+    private long mergedSamples;
+    private long lateSamples;
+    private long reorderedSamples;
+    private long rowsEmitted;
+
+    public FusionEngine(long gridPeriodNanos, long maxSkewNanos, long maxLatencyNanos,
+                        Interpolation interpolation, int bufferCapacity, Listener listener) {
+        if (gridPeriodNanos <= 0 || maxSkewNanos < 0 || maxLatencyNanos < 0) {
+            throw new IllegalArgumentException("Grid period must be positive and skew and latency non-negative");
+        }
+        if (bufferCapacity < 2) {
+            throw new IllegalArgumentException("bufferCapacity must be at least 2: " + bufferCapacity);
+        }
+        this.gridPeriodNanos = gridPeriodNanos;
+        this.maxSkewNanos = maxSkewNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.interpolation = interpolation;
+        this.bufferCapacity = bufferCapacity;
+        this.listener = listener;
+    }
+
+    /**
+     * Registers a stream and returns its index. Streams are also registered on their first sample;
+     * registering them up front fixes the row layout before data arrives.
+     */
+    public synchronized int addStream(String streamId, PayloadSchema schema) {
+        Stream stream = streamsById.get(streamId);
+        if (stream != null) {
+            return stream.index;
+        }
+        stream = new Stream(streamId, streams.size(), row.length, schema.getChannelCount(), bufferCapacity);
+        streamsById.put(streamId, stream);
+        streams.add(stream);
+        for (PayloadSchema.Field field : schema.getFields()) {
+            columnNames.add(streamId + "." + field.name);
+        }
+        row = new double[row.length + stream.channels];
+        return stream.index;
+    }
+
+    @Override
+    public synchronized void onSample(String streamId, PayloadSchema schema, long timestampNanos, double[] values) {
+        Stream stream = streamsById.get(streamId);
+        if (stream == null) {
+            stream = streams.get(addStream(streamId, schema));
+        }
+        while (stream.pending.isFull()) {
+            // Bound memory: stop waiting for the slowest stream.
+            Stream oldest = oldestPending();
+            emitMerged(oldest, oldest.pending.headTime());
+        }
+        if (timestampNanos < watermarkNanos) {
+            lateSamples++;
+            return;
+        }
+        if (timestampNanos < stream.latestNanos) {
+            reorderedSamples++;
+            stream.disorderNanos = Math.max(stream.disorderNanos,
+                    Math.min(stream.latestNanos - timestampNanos, maxLatencyNanos));
+            stream.pending.insertSorted(timestampNanos, values);
+        } else {
+            stream.pending.add(timestampNanos, values);
+            stream.latestNanos = timestampNanos;
+        }
+        newestNanos = Math.max(newestNanos, timestampNanos);
+        drain(newestNanos - maxLatencyNanos);
+    }
+
+    /**
+     * Lets stalled streams stop holding back the merge once {@code nowNanos} (on the sample clock)
+     * is more than the maximum latency past their pending samples.
+     */
+    public synchronized void advanceTo(long nowNanos) {
+        newestNanos = Math.max(newestNanos, nowNanos);
+        drain(newestNanos - maxLatencyNanos);
+    }
+
+    /** Emits everything still buffered, e.g. when a session ends. */
+    public synchronized void flush() {
+        drain(Long.MAX_VALUE);
+        if (gridStarted) {
+            emitRows(Long.MAX_VALUE);
+        }
+    }
+
+    public synchronized List<String> getColumnNames() {
+        return new ArrayList<>(columnNames);
+    }
+
+    public synchronized int getStreamCount() {
+        return streams.size();
+    }
+
+    public synchronized long getMergedSamples() {
+        return mergedSamples;
+    }
+
+    public synchronized long getLateSamples() {
+        return lateSamples;
+    }
+
+    /** Samples that arrived out of order within their stream and were put back in order. */
+    public synchronized long getReorderedSamples() {
+        return reorderedSamples;
+    }
+
+    public synchronized long getRowsEmitted() {
+        return rowsEmitted;
+    }
+
+    private Stream oldestPending() {
+        Stream oldest = null;
+        for (Stream stream : streams) {
+            if (!stream.pending.isEmpty()
+                    && (oldest == null || stream.pending.headTime() < oldest.pending.headTime())) {
+                oldest = stream;
+            }
+        }
+        return oldest;
+    }
+
+    private void drain(long forceBeforeNanos) {
+        while (true) {
+            Stream next = oldestPending();
+            if (next == null) {
+                return;
+            }
+            long timestamp = next.pending.headTime();
+            if (timestamp > forceBeforeNanos && !allCaughtUp(timestamp)) {
+                return;
+            }
+            emitMerged(next, timestamp);
+        }
+    }
+
+    private boolean allCaughtUp(long timestamp) {
+        for (Stream stream : streams) {
+            if (stream.latestNanos - stream.disorderNanos < timestamp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void emitMerged(Stream stream, long timestamp) {
+        double[] values = stream.scratch;
+        stream.pending.head(values);
+        stream.pending.removeHead();
+        stream.history.addOverwriting(timestamp, values);
+        watermarkNanos = timestamp;
+        mergedSamples++;
+        listener.onMergedSample(stream.index, stream.id, timestamp, values);
+
+        if (!gridStarted) {
+            gridStarted = true;
+            nextGridNanos = Math.floorDiv(timestamp + gridPeriodNanos - 1, gridPeriodNanos) * gridPeriodNanos;
+        }
+        emitRows(timestamp);
+    }
+
+    private void emitRows(long mergedNanos) {
+        while (nextGridNanos <= watermarkNanos && mergedNanos - nextGridNanos > maxSkewNanos) {
+            for (Stream stream : streams) {
+                stream.resample(nextGridNanos, row, maxSkewNanos, interpolation);
+            }
+            rowsEmitted++;
+            listener.onRow(nextGridNanos, row);
+            nextGridNanos += gridPeriodNanos;
+        }
+    }
+
+    private static class Stream {
+        final String id;
+        final int index;
+        final int columnOffset;
+        final int channels;
+        final SampleRing pending;
+        final SampleRing history;
+        final double[] scratch;
+        long latestNanos = Long.MIN_VALUE;
+        /** Furthest a sample of this stream arrived behind latestNanos, capped at the max latency. */
+        long disorderNanos;
+
+        Stream(String id, int index, int columnOffset, int channels, int capacity) {
+            this.id = id;
+            this.index = index;
+            this.columnOffset = columnOffset;
+            this.channels = channels;
+            this.pending = new SampleRing(capacity, channels);
+            this.history = new SampleRing(capacity, channels);
+            this.scratch = new double[channels];
+        }
+
+        void resample(long gridNanos, double[] row, long maxSkewNanos, Interpolation interpolation) {
+            int after = history.firstAfter(gridNanos);
+            int before = after - 1;
+            boolean hasBefore = before >= 0 && gridNanos - history.time(before) <= maxSkewNanos;
+            boolean hasAfter = after < history.size() && history.time(after) - gridNanos <= maxSkewNanos;
+
+            if (interpolation == Interpolation.LINEAR && hasBefore && hasAfter) {
+                long t0 = history.time(before);
+                double weight = (double) (gridNanos - t0) / (history.time(after) - t0);
+                for (int c = 0; c < channels; c++) {
+                    double v0 = history.value(before, c);
+                    row[columnOffset + c] = v0 + (history.value(after, c) - v0) * weight;
+                }
+            } else if (hasBefore) {
+                history.copyValues(before, row, columnOffset);
+            } else if (hasAfter && interpolation == Interpolation.LINEAR) {
+                history.copyValues(after, row, columnOffset);
+            } else {
+                Arrays.fill(row, columnOffset, columnOffset + channels, Double.NaN);
+            }
+        }
+    }
+
+    /** Fixed-capacity FIFO of timestamped samples stored in primitive arrays. */
+    private static class SampleRing {
+        private final long[] times;
+        private final double[] values;
+        private final int channels;
+        private int start;
+        private int size;
+
+        SampleRing(int capacity, int channels) {
+            this.times = new long[capacity];
+            this.values = new double[capacity * channels];
+            this.channels = channels;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean isFull() {
+            return size == times.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(long time, double[] sample) {
+            int slot = (start + size) % times.length;
+            times[slot] = time;
+            System.arraycopy(sample, 0, values, slot * channels, channels);
+            size++;
+        }
+
+        /** Inserts after every sample with the same or an earlier time. */
+        void insertSorted(long time, double[] sample) {
+            int index = size;
+            while (index > 0 && time(index - 1) > time) {
+                index--;
+            }
+            for (int i = size; i > index; i--) {
+                int to = (start + i) % times.length;
+                int from = (start + i - 1) % times.length;
+                times[to] = times[from];
+                System.arraycopy(values, from * channels, values, to * channels, channels);
+            }
+            int slot = (start + index) % times.length;
+            times[slot] = time;
+            System.arraycopy(sample, 0, values, slot * channels, channels);
+            size++;
+        }
+
+        void addOverwriting(long time, double[] sample) {
+            if (isFull()) {
+                removeHead();
+            }
+            add(time, sample);
+        }
+
+        long headTime() {
+            return times[start];
+        }
+
+        void head(double[] out) {
+            System.arraycopy(values, start * channels, out, 0, channels);
+        }
+
+        void removeHead() {
+            start = (start + 1) % times.length;
+            size--;
+        }
+
+        long time(int i) {
+            return times[(start + i) % times.length];
+        }
+
+        double value(int i, int channel) {
+            return values[((start + i) % times.length) * channels + channel];
+        }
+
+        void copyValues(int i, double[] out, int offset) {
+            System.arraycopy(values, ((start + i) % times.length) * channels, out, offset, channels);
+        }
+
+        /** Index of the first sample newer than {@code time}, or size() if there is none. */
+        int firstAfter(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (time(mid) <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.datareader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves notifications from the GATT callback to the sample listeners through four
+ * {@link PipelineStage}s, each on its own threads:
+ *
+ * <ol>
+ * <li>ingest takes notifications off the callback thread and routes them to their stream;</li>
+ * <li>decode runs each stream's {@link CharacteristicStream} (framing, clock sync, decoding);</li>
+ * <li>process calls the processors, e.g. fusion and statistics;</li>
+ * <li>persist calls the sinks, e.g. the session recorder.</li>
+ * </ol>
+ *
+ * The raw packets shown in the UI do not go through the pipeline; the GATT callback posts them
+ * directly.
+ *
+ * From decode on, items are partitioned by stream, so each stream is decoded, processed and
+ * persisted in order while different streams run in parallel. Processors and sinks that are
+ * shared between streams must therefore be thread-safe when their stage has more than one thread.
+ */
+public class IngestPipeline {
+    /** A decoded sample. Unlike {@link SampleListener} values, {@code values} is not reused. */
+    public static class Sample {
+        public final String streamId;
+        public final PayloadSchema schema;
+        public final long timestampNanos;
+        public final double[] values;
+
+        public Sample(String streamId, PayloadSchema schema, long timestampNanos, double[] values) {
+            this.streamId = streamId;
+            this.schema = schema;
+            this.timestampNanos = timestampNanos;
+            this.values = values;
+        }
+    }
+
+    private static class Notification {
+        final StreamDecoder decoder;
+        final SensorPacket packet;
+
+        Notification(StreamDecoder decoder, SensorPacket packet) {
+            this.decoder = decoder;
+            this.packet = packet;
+        }
+    }
+
+    /** Collects the samples of one stream into whichever batch its decode worker is building. */
+    private static class StreamDecoder implements SampleListener {
+        final CharacteristicStream stream;
+        List<Sample> out;
+
+        StreamDecoder(String deviceAddress, PayloadSchema schema) {
+            this.stream = new CharacteristicStream(deviceAddress, schema, Collections.singletonList(this));
+        }
+
+        @Override
+        public void onSample(String streamId, PayloadSchema schema, long timestampNanos, double[] values) {
+            out.add(new Sample(streamId, schema, timestampNanos, values.clone()));
+        }
+    }
+
+    private final Map<UUID, StreamDecoder> decoders = new ConcurrentHashMap<>();
+    private final List<SampleListener> processors = new CopyOnWriteArrayList<>();
+    private final List<SampleListener> sinks = new CopyOnWriteArrayList<>();
+
+    private final PipelineStage<SensorPacket> ingestStage;
+    private final PipelineStage<Notification> decodeStage;
+    private final PipelineStage<Sample> processStage;
+    private final PipelineStage<Sample> persistStage;
+
+    private final AtomicLong unknownPackets = new AtomicLong();
+    private PipelineStage.Snapshot[] lastSnapshots;
+
+    /**
+     * @param queueCapacity items each worker may have queued before submitters block, or before
+     *                      {@link #submit} drops notifications
+     * @param maxBatchSize  most items a worker takes from its queue at once
+     */
+    public IngestPipeline(int ingestParallelism, int decodeParallelism, int processParallelism,
+                          int persistParallelism, int queueCapacity, int maxBatchSize) {
+        persistStage = new PipelineStage<>("persist", persistParallelism, queueCapacity, maxBatchSize,
+                sample -> sample.streamId, () -> batch -> dispatch(sinks, batch));
+        processStage = new PipelineStage<>("process", processParallelism, queueCapacity, maxBatchSize,
+                sample -> sample.streamId, () -> batch -> {
+                    dispatch(processors, batch);
+                    persistStage.submitAll(batch);
+                });
+        decodeStage = new PipelineStage<>("decode", decodeParallelism, queueCapacity, maxBatchSize,
+                notification -> notification.decoder, () -> new PipelineStage.Worker<Notification>() {
+                    private final List<Sample> samples = new ArrayList<>();
+
+                    @Override
+                    public void process(List<Notification> batch) {
+                        try {
+                            for (Notification notification : batch) {
+                                StreamDecoder decoder = notification.decoder;
+                                decoder.out = samples;
+                                decoder.stream.onNotification(notification.packet.value, notification.packet.arrivalNanos);
+                            }
+                            processStage.submitAll(samples);
+                        } finally {
+                            samples.clear();
+                        }
+                    }
+                });
+        ingestStage = new PipelineStage<>("ingest", ingestParallelism, queueCapacity, maxBatchSize,
+                packet -> packet.characteristicUuid, () -> new PipelineStage.Worker<SensorPacket>() {
+                    private final List<Notification> notifications = new ArrayList<>();
+
+                    @Override
+                    public void process(List<SensorPacket> batch) {
+                        for (SensorPacket packet : batch) {
+                            StreamDecoder decoder = decoders.get(packet.characteristicUuid);
+                            if (decoder != null) {
+                                notifications.add(new Notification(decoder, packet));
+                            } else {
+                                unknownPackets.incrementAndGet();
+                            }
+                        }
+                        try {
+                            decodeStage.submitAll(notifications);
+                        } finally {
+                            notifications.clear();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Creates the stream for a subscribed characteristic. Its notifications are decoded in the
+     * pipeline; the returned stream is for inspecting framing and clock statistics.
+     */
+    public CharacteristicStream openStream(String deviceAddress, PayloadSchema schema) {
+        StreamDecoder decoder = new StreamDecoder(deviceAddress, schema);
+        decoders.put(schema.characteristicUuid, decoder);
+        return decoder.stream;
+    }
+
+    /** Forgets the open streams, e.g. after a disconnect. Notifications already queued still finish. */
+    public void closeStreams() {
+        decoders.clear();
+    }
+
+    /**
+     * Queues a notification. Called from the GATT callback, so it never blocks: when the ingest
+     * queue is full, or the pipeline is closed, the notification is dropped, counted and false is
+     * returned. Only the stages behind ingest apply blocking backpressure to each other.
+     */
+    public boolean submit(SensorPacket packet) {
+        return ingestStage.offer(packet);
+    }
+
+    public void addProcessor(SampleListener listener) {
+        processors.add(listener);
+    }
+
+    public void removeProcessor(SampleListener listener) {
+        processors.remove(listener);
+    }
+
+    public void addSink(SampleListener listener) {
+        sinks.add(listener);
+    }
+
+    public void removeSink(SampleListener listener) {
+        sinks.remove(listener);
+    }
+
+    /** The stages in pipeline order. */
+    public List<PipelineStage<?>> getStages() {
+        return Arrays.asList(ingestStage, decodeStage, processStage, persistStage);
+    }
+
+    /** Notifications dropped because the ingest queue was full or the pipeline closed. */
+    public long getDroppedNotifications() {
+        return ingestStage.getDropped();
+    }
+
+    /** Notifications of characteristics without an open stream. */
+    public long getUnknownPackets() {
+        return unknownPackets.get();
+    }
+
+    /**
+     * Stops accepting notifications and lets each stage drain into the next, waiting up to
+     * {@code timeout} per stage. Returns whether everything queued was processed.
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        boolean drained = true;
+        for (PipelineStage<?> stage : getStages()) {
+            stage.close();
+            drained &= stage.awaitTermination(timeout, unit);
+        }
+        return drained;
+    }
+
+    /**
+     * One line per stage: threads, queue depth, throughput since the previous call, mean batch
+     * size, the total time upstream stalled on the stage's queue and the items it dropped. For
+     * ingest, the dropped items are notifications lost to a full queue.
+     */
+    public synchronized String summary() {
+        List<PipelineStage<?>> stages = getStages();
+        PipelineStage.Snapshot[] snapshots = new PipelineStage.Snapshot[stages.size()];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < stages.size(); i++) {
+            PipelineStage<?> stage = stages.get(i);
+            PipelineStage.Snapshot snapshot = stage.snapshot();
+            snapshots[i] = snapshot;
+            double throughput = lastSnapshots != null ? snapshot.throughputSince(lastSnapshots[i]) : 0.0;
+            sb.append(String.format(Locale.US, "%s x%d: queue %d, %.0f/s, batch %.1f, stalled %d ms, dropped %d%n",
+                    stage.getName(), stage.getParallelism(), snapshot.queueDepth, throughput,
+                    snapshot.getMeanBatchSize(), snapshot.stallNanos / 1_000_000, snapshot.dropped));
+        }
+        lastSnapshots = snapshots;
+        return sb.toString().trim();
+    }
+
+    private static void dispatch(List<SampleListener> listeners, List<Sample> batch) {
+        for (SampleListener listener : listeners) {
+            for (Sample sample : batch) {
+                listener.onSample(sample.streamId, sample.schema, sample.timestampNanos, sample.values);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.datareader;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Layout of the samples one characteristic sends: packed fields in declaration order, each
+ * scaled into engineering units on decode. The field offsets, types and scales are resolved
+ * into arrays up front so decoding a sample is a single loop with no lookups.
+ */
+public class PayloadSchema {
+    public static class Field {
+        public final String name;
+        public final FieldType type;
+        public final double scale;
+        public final String unit;
+
+        public Field(String name, FieldType type, double scale, String unit) {
+            this.name = name;
+            this.type = type;
+            this.scale = scale;
+            this.unit = unit;
+        }
+    }
+
+    public final String name;
+    public final UUID serviceUuid;
+    public final UUID characteristicUuid;
+    public final boolean littleEndian;
+    public final boolean framed;
+    public final long samplePeriodNanos;
+    public final int maxFrameSize;
+    /** Nominal length of a device clock tick, or 0 if the sensor sends no tick counter. */
+    public final double clockNanosPerTick;
+
+    private final List<Field> fields;
+    private final int[] offsets;
+    private final FieldType[] types;
+    private final double[] scales;
+    private final int sampleSize;
+
+    public PayloadSchema(String name, UUID serviceUuid, UUID characteristicUuid, boolean littleEndian,
+                         List<Field> fields, boolean framed, long samplePeriodNanos, int maxFrameSize,
+                         double clockNanosPerTick) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("Schema " + name + " has no fields");
+        }
+        this.name = name;
+        this.serviceUuid = serviceUuid;
+        this.characteristicUuid = characteristicUuid;
+        this.littleEndian = littleEndian;
+        this.framed = framed;
+        this.samplePeriodNanos = samplePeriodNanos;
+        this.maxFrameSize = maxFrameSize;
+        this.clockNanosPerTick = clockNanosPerTick;
+        this.fields = Collections.unmodifiableList(fields);
+
+        offsets = new int[fields.size()];
+        types = new FieldType[fields.size()];
+        scales = new double[fields.size()];
+        int offset = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            offsets[i] = offset;
+            types[i] = field.type;
+            scales[i] = field.scale;
+            offset += field.type.size;
+        }
+        sampleSize = offset;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Longest time a frame can span, i.e. how far before its arrival the first sample of a full
+     * frame is stamped; 0 for unframed schemas.
+     */
+    public long getMaxFrameDurationNanos() {
+        return framed ? (long) (maxFrameSize / sampleSize) * samplePeriodNanos : 0;
+    }
+
+    public int getChannelCount() {
+        return types.length;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /** Decodes the sample at {@code offset} into {@code out}, which must hold one value per field. */
+    public void decode(byte[] buffer, int offset, double[] out) {
+        for (int i = 0; i < types.length; i++) {
+            out[i] = types[i].read(buffer, offset + offsets[i], littleEndian) * scales[i];
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.datareader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * One stage of a pipeline: a fixed number of worker threads on the stage's own executor, each
+ * fed by its own bounded queue.
+ *
+ * Items are routed to a worker by the hash of their partition key, so items with the same key
+ * are processed in submission order by a single thread and workers may keep per-key state.
+ * Handoff happens in batches: {@link #submitAll} inserts a whole list under one lock acquisition
+ * per partition, and a worker drains everything queued for it, up to {@code maxBatchSize} items,
+ * before calling its {@link Worker}. Batches therefore grow with load while a lone item is
+ * handed over without waiting.
+ *
+ * A full queue blocks {@link #submit} and {@link #submitAll}. The time submitters spend blocked is
+ * reported as the stage's stall time, which makes the slowest stage of a pipeline the one its
+ * upstream stalls on. Threads that must never block, such as a binder callback, use
+ * {@link #offer} instead, which drops the item when its queue is full.
+ */
+public class PipelineStage<T> {
+    public interface Worker<T> {
+        /** Processes a batch. The list is reused once this returns. */
+        void process(List<T> batch);
+    }
+
+    public interface Partitioner<T> {
+        Object keyOf(T item);
+    }
+
+    /** Counters of a stage at one point in time. */
+    public static class Snapshot {
+        public final long timestampNanos;
+        public final int queueDepth;
+        public final long itemsProcessed;
+        public final long batchesProcessed;
+        public final long stallNanos;
+        public final long busyNanos;
+        public final long dropped;
+
+        Snapshot(long timestampNanos, int queueDepth, long itemsProcessed, long batchesProcessed,
+                 long stallNanos, long busyNanos, long dropped) {
+            this.timestampNanos = timestampNanos;
+            this.queueDepth = queueDepth;
+            this.itemsProcessed = itemsProcessed;
+            this.batchesProcessed = batchesProcessed;
+            this.stallNanos = stallNanos;
+            this.busyNanos = busyNanos;
+            this.dropped = dropped;
+        }
+
+        /** Items processed per second between {@code earlier} and this snapshot. */
+        public double throughputSince(Snapshot earlier) {
+            long elapsed = timestampNanos - earlier.timestampNanos;
+            return elapsed > 0 ? (itemsProcessed - earlier.itemsProcessed) * 1e9 / elapsed : 0.0;
+        }
+
+        public double getMeanBatchSize() {
+            return batchesProcessed > 0 ? (double) itemsProcessed / batchesProcessed : 0.0;
+        }
+    }
+
+    private final String name;
+    private final int maxBatchSize;
+    private final Partitioner<T> partitioner;
+    private final List<Partition> partitions;
+    private final ExecutorService executor;
+
+    private long itemsProcessed;
+    private long batchesProcessed;
+    private long stallNanos;
+    private long busyNanos;
+    private long dropped;
+    private long failures;
+    private RuntimeException lastFailure;
+
+    public PipelineStage(String name, int parallelism, int queueCapacity, int maxBatchSize,
+                         Partitioner<T> partitioner, Supplier<? extends Worker<T>> workerFactory) {
+        if (parallelism < 1 || queueCapacity < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Parallelism, queue capacity and batch size must be positive");
+        }
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.partitioner = partitioner;
+        this.partitions = new ArrayList<>(parallelism);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < parallelism; i++) {
+            partitions.add(new Partition(queueCapacity));
+        }
+        for (Partition partition : partitions) {
+            Worker<T> worker = workerFactory.get();
+            executor.execute(() -> runWorker(partition, worker));
+        }
+    }
+
+    /** Queues one item, blocking while its partition is full. Returns false if the stage is closed. */
+    public boolean submit(T item) {
+        return partitions.get(partitionIndex(item)).put(item);
+    }
+
+    /**
+     * Queues one item without blocking. Returns false, and counts the item as dropped, if its
+     * partition is full or the stage is closed.
+     */
+    public boolean offer(T item) {
+        return partitions.get(partitionIndex(item)).offer(item);
+    }
+
+    /** Queues a batch, blocking while partitions are full. Returns false if any item was dropped. */
+    public boolean submitAll(List<T> items) {
+        if (items.isEmpty()) {
+            return true;
+        }
+        if (partitions.size() == 1) {
+            return partitions.get(0).putAll(items);
+        }
+        List<List<T>> split = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            split.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            split.get(partitionIndex(item)).add(item);
+        }
+        boolean accepted = true;
+        for (int i = 0; i < partitions.size(); i++) {
+            if (!split.get(i).isEmpty()) {
+                accepted &= partitions.get(i).putAll(split.get(i));
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Stops accepting items. Workers finish what is already queued and exit; use
+     * {@link #awaitTermination} to wait for them.
+     */
+    public void close() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+        executor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return partitions.size();
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Partition partition : partitions) {
+            depth += partition.size();
+        }
+        return depth;
+    }
+
+    public synchronized long getItemsProcessed() {
+        return itemsProcessed;
+    }
+
+    public synchronized long getBatchesProcessed() {
+        return batchesProcessed;
+    }
+
+    /** Total time submitters spent blocked on a full queue, in nanoseconds. */
+    public synchronized long getStallNanos() {
+        return stallNanos;
+    }
+
+    /** Total time workers spent processing batches, in nanoseconds. */
+    public synchronized long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /** Items not queued because the stage was closed, an offer found it full or the submitter was interrupted. */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /** Batches whose worker threw; the rest of such a batch is skipped. */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    public Snapshot snapshot() {
+        int depth = getQueueDepth();
+        synchronized (this) {
+            return new Snapshot(System.nanoTime(), depth, itemsProcessed, batchesProcessed, stallNanos, busyNanos, dropped);
+        }
+    }
+
+    private int partitionIndex(T item) {
+        if (partitions.size() == 1) {
+            return 0;
+        }
+        Object key = partitioner.keyOf(item);
+        return Math.floorMod(key == null ? 0 : key.hashCode(), partitions.size());
+    }
+
+    private void runWorker(Partition partition, Worker<T> worker) {
+        List<T> batch = new ArrayList<>(maxBatchSize);
+        while (partition.drainTo(batch, maxBatchSize)) {
+            long start = System.nanoTime();
+            try {
+                worker.process(batch);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    failures++;
+                    lastFailure = e;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                itemsProcessed += batch.size();
+                batchesProcessed++;
+                busyNanos += elapsed;
+            }
+            batch.clear();
+        }
+    }
+
+    private synchronized void recordStall(long nanos) {
+        stallNanos += nanos;
+    }
+
+    private synchronized void recordDropped(int count) {
+        dropped += count;
+    }
+
+    /** Bounded FIFO for one worker. */
+    private class Partition {
+        private final ArrayDeque<T> items;
+        private final int capacity;
+        private boolean closed = false;
+
+        Partition(int capacity) {
+            this.items = new ArrayDeque<>(capacity);
+            this.capacity = capacity;
+        }
+
+        boolean put(T item) {
+            synchronized (this) {
+                if (!awaitSpace()) {
+                    recordDropped(1);
+                    return false;
+                }
+                items.add(item);
+                notifyAll();
+                return true;
+            }
+        }
+
+        synchronized boolean offer(T item) {
+            if (closed || items.size() >= capacity) {
+                recordDropped(1);
+                return false;
+            }
+            items.add(item);
+            notifyAll();
+            return true;
+        }
+
+        boolean putAll(List<T> batch) {
+            int next = 0;
+            synchronized (this) {
+                while (next < batch.size()) {
+                    if (!awaitSpace()) {
+                        recordDropped(batch.size() - next);
+                        return false;
+                    }
+                    int end = Math.min(batch.size(), next + capacity - items.size());
+                    for (; next < end; next++) {
+                        items.add(batch.get(next));
+                    }
+                    notifyAll();
+                }
+                return true;
+            }
+        }
+
+        /** Waits until the queue has room; returns false if closed or interrupted first. */
+        private boolean awaitSpace() {
+            if (items.size() < capacity || closed) {
+                return !closed;
+            }
+            long start = System.nanoTime();
+            try {
+                while (items.size() >= capacity && !closed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                recordStall(System.nanoTime() - start);
+            }
+            return !closed;
+        }
+
+        /** Blocks for at least one item; returns false once closed and empty. */
+        synchronized boolean drainTo(List<T> out, int max) {
+            try {
+                while (items.isEmpty() && !closed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (items.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < max && !items.isEmpty(); i++) {
+                out.add(items.poll());
+            }
+            notifyAll();
+            return true;
+        }
+
+        synchronized int size() {
+            return items.size();
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.datareader;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch after Karnin, Lang and Liberty (KLL).
+ *
+ * Values enter level 0. When the sketch is full, the lowest level over its capacity is sorted
+ * and every other item, starting at a random offset, is promoted to the next level with twice
+ * the weight. Capacities shrink by 2/3 per level below the top, so memory stays around
+ * {@code 3k} values plus a logarithmic number of levels however many values are added. Rank
+ * error is roughly {@code 1.7 / k}.
+ */
+public class QuantileSketch {
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int levelCount = 1;
+    private int maxSize;
+    private int size;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private long randomState = 0x9E3779B97F4A7C15L;
+
+    public QuantileSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        levels[0] = new double[k];
+        maxSize = computeMaxSize();
+    }
+
+    /** An independent copy, e.g. to query outside the lock that guards this sketch. */
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(k);
+        copy.levels = new double[levelCount][];
+        for (int h = 0; h < levelCount; h++) {
+            copy.levels[h] = Arrays.copyOf(levels[h], Math.max(MIN_CAPACITY, sizes[h]));
+        }
+        copy.sizes = sizes.clone();
+        copy.levelCount = levelCount;
+        copy.maxSize = maxSize;
+        copy.size = size;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        copy.randomState = randomState;
+        return copy;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /** Number of values currently retained. */
+    public int getRetained() {
+        return size;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        if (size >= maxSize) {
+            compress();
+        }
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        while (levelCount < other.levelCount) {
+            grow();
+        }
+        for (int h = 0; h < other.levelCount; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        while (size >= maxSize) {
+            compress();
+        }
+    }
+
+    /** Fraction of added values that are at most {@code value}. */
+    public double rank(double value) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long weight = 0;
+        for (int h = 0; h < levelCount; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (levels[h][i] <= value) {
+                    weight += 1L << h;
+                }
+            }
+        }
+        return (double) weight / count;
+    }
+
+    /** Estimated value at {@code fraction} (0 to 1) of the sorted input, or NaN if empty. */
+    public double quantile(double fraction) {
+        return quantiles(new double[]{fraction})[0];
+    }
+
+    /** Like {@link #quantile} for several fractions, sorting the retained values once. */
+    public double[] quantiles(double[] fractions) {
+        double[] result = new double[fractions.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        double[] values = new double[size];
+        long[] weights = new long[size];
+        int n = sortedByValue(values, weights);
+        for (int q = 0; q < fractions.length; q++) {
+            if (fractions[q] <= 0) {
+                result[q] = min;
+                continue;
+            }
+            if (fractions[q] >= 1) {
+                result[q] = max;
+                continue;
+            }
+            double target = fractions[q] * count;
+            long cumulative = 0;
+            result[q] = max;
+            for (int i = 0; i < n; i++) {
+                cumulative += weights[i];
+                if (cumulative >= target) {
+                    result[q] = values[i];
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void clear() {
+        levels = new double[1][];
+        levels[0] = new double[k];
+        sizes = new int[1];
+        levelCount = 1;
+        maxSize = computeMaxSize();
+        size = 0;
+        count = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(k);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(levelCount);
+        for (int h = 0; h < levelCount; h++) {
+            out.writeInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; i++) {
+                out.writeDouble(levels[h][i]);
+            }
+        }
+    }
+
+    public static QuantileSketch readFrom(DataInput in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(in.readInt());
+        sketch.count = in.readLong();
+        sketch.min = in.readDouble();
+        sketch.max = in.readDouble();
+        int levelCount = in.readInt();
+        if (levelCount < 1 || levelCount > 64) {
+            throw new IOException("Invalid sketch level count " + levelCount);
+        }
+        while (sketch.levelCount < levelCount) {
+            sketch.grow();
+        }
+        for (int h = 0; h < levelCount; h++) {
+            int levelSize = in.readInt();
+            for (int i = 0; i < levelSize; i++) {
+                sketch.append(h, in.readDouble());
+            }
+        }
+        return sketch;
+    }
+
+    private int capacity(int level) {
+        int depth = levelCount - level - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int computeMaxSize() {
+        int total = 0;
+        for (int h = 0; h < levelCount; h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+
+    private void grow() {
+        levels = Arrays.copyOf(levels, levelCount + 1);
+        sizes = Arrays.copyOf(sizes, levelCount + 1);
+        levels[levelCount] = new double[Math.max(MIN_CAPACITY, k)];
+        levelCount++;
+        maxSize = computeMaxSize();
+    }
+
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+        size++;
+    }
+
+    private void compress() {
+        for (int h = 0; h < levelCount; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == levelCount) {
+                    grow();
+                }
+                compact(h);
+                return;
+            }
+        }
+    }
+
+    private void compact(int level) {
+        double[] items = levels[level];
+        int n = sizes[level];
+        Arrays.sort(items, 0, n);
+        // With an odd count the smallest item stays behind at this level.
+        int kept = n & 1;
+        int offset = nextRandomBit();
+        for (int i = kept + offset; i < n; i += 2) {
+            append(level + 1, items[i]);
+        }
+        sizes[level] = kept;
+        size -= n - kept;
+    }
+
+    private int nextRandomBit() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState >>> 63);
+    }
+
+    /**
+     * Fills {@code values} with the retained values in ascending order and {@code weights} with
+     * their weights; returns how many there are. All values of a level share one weight, so each
+     * level is sorted on its own and the few levels are then merged.
+     */
+    private int sortedByValue(double[] values, long[] weights) {
+        double[][] sorted = new double[levelCount][];
+        int[] next = new int[levelCount];
+        for (int h = 0; h < levelCount; h++) {
+            sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(sorted[h]);
+        }
+        for (int n = 0; n < size; n++) {
+            int smallest = -1;
+            for (int h = 0; h < levelCount; h++) {
+                if (next[h] < sorted[h].length
+                        && (smallest < 0 || sorted[h][next[h]] < sorted[smallest][next[smallest]])) {
+                    smallest = h;
+                }
+            }
+            values[n] = sorted[smallest][next[smallest]++];
+            weights[n] = 1L << smallest;
+        }
+        return size;
+    }
+}
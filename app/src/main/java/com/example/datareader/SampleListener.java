@@ -0,0 +1,9 @@
+package com.example.datareader;
+
+/**
+ * Receives decoded samples. {@code values} is reused for the next sample of the same stream, so
+ * listeners that keep it must copy it.
+ */
+public interface SampleListener {
+    void onSample(String streamId, PayloadSchema schema, long timestampNanos, double[] values);
+}
@@ -0,0 +1,209 @@
+package com.example.datareader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Payload schemas keyed by characteristic UUID, loaded from a properties file such as
+ * {@code assets/sensor_schemas.properties}:
+ *
+ * <pre>
+ * schemas=imu
+ * imu.service=...
+ * imu.characteristic=...
+ * imu.byteOrder=little
+ * imu.fields=ax:int16:0.001:g, ay:int16:0.001:g, az:int16:0.001:g
+ * imu.framed=true
+ * imu.samplePeriodUs=1000
+ * imu.maxFrameSize=512
+ * imu.clockTickUs=1
+ *
+ * command.service=...
+ * command.characteristic=...
+ * command.credits=4
+ * command.creditCharacteristic=...
+ * </pre>
+ *
+ * Each field is {@code name:type[:scale[:unit]]}. Only the service, characteristic and fields
+ * keys are required; a framed schema also needs a positive {@code samplePeriodUs}, and
+ * {@code maxFrameSize} must hold at least one sample. The optional {@code command.*} keys name the
+ * characteristic that {@link CommandChannel} writes to, which must not be one of the schemas'
+ * characteristics; without {@code command.credits} writes are not flow controlled, and the
+ * credit characteristic, if any, notifies one byte of newly granted credits.
+ */
+public class SchemaRegistry {
+    public static final String ASSET_NAME = "sensor_schemas.properties";
+
+    private static final int DEFAULT_MAX_FRAME_SIZE = 512;
+
+    public static class CommandEndpoint {
+        public final UUID serviceUuid;
+        public final UUID characteristicUuid;
+        public final int initialCredits;
+        /** Characteristic in the same service that grants credits, or null. */
+        public final UUID creditCharacteristicUuid;
+
+        public CommandEndpoint(UUID serviceUuid, UUID characteristicUuid, int initialCredits,
+                               UUID creditCharacteristicUuid) {
+            this.serviceUuid = serviceUuid;
+            this.characteristicUuid = characteristicUuid;
+            this.initialCredits = initialCredits;
+            this.creditCharacteristicUuid = creditCharacteristicUuid;
+        }
+    }
+
+    private final Map<UUID, PayloadSchema> byCharacteristic;
+    private final CommandEndpoint commandEndpoint;
+
+    public SchemaRegistry(Collection<PayloadSchema> schemas) {
+        this(schemas, null);
+    }
+
+    public SchemaRegistry(Collection<PayloadSchema> schemas, CommandEndpoint commandEndpoint) {
+        Map<UUID, PayloadSchema> table = new LinkedHashMap<>();
+        for (PayloadSchema schema : schemas) {
+            if (table.put(schema.characteristicUuid, schema) != null) {
+                throw new IllegalArgumentException("Characteristic " + schema.characteristicUuid
+                        + " is registered twice");
+            }
+        }
+        if (commandEndpoint != null && table.containsKey(commandEndpoint.characteristicUuid)) {
+            throw new IllegalArgumentException("Command characteristic " + commandEndpoint.characteristicUuid
+                    + " must not be a data characteristic");
+        }
+        if (commandEndpoint != null && table.containsKey(commandEndpoint.creditCharacteristicUuid)) {
+            throw new IllegalArgumentException("Credit characteristic " + commandEndpoint.creditCharacteristicUuid
+                    + " must not be a data characteristic");
+        }
+        byCharacteristic = Collections.unmodifiableMap(table);
+        this.commandEndpoint = commandEndpoint;
+    }
+
+    public static SchemaRegistry load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        List<PayloadSchema> schemas = new ArrayList<>();
+        for (String name : properties.getProperty("schemas", "").split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                schemas.add(parseSchema(properties, name));
+            }
+        }
+        return new SchemaRegistry(schemas, parseCommandEndpoint(properties));
+    }
+
+    public PayloadSchema get(UUID characteristicUuid) {
+        return byCharacteristic.get(characteristicUuid);
+    }
+
+    public Collection<PayloadSchema> getSchemas() {
+        return byCharacteristic.values();
+    }
+
+    public boolean isEmpty() {
+        return byCharacteristic.isEmpty();
+    }
+
+    /** The longest {@link PayloadSchema#getMaxFrameDurationNanos()} of the registered schemas. */
+    public long getMaxFrameDurationNanos() {
+        long longest = 0;
+        for (PayloadSchema schema : byCharacteristic.values()) {
+            longest = Math.max(longest, schema.getMaxFrameDurationNanos());
+        }
+        return longest;
+    }
+
+    /** The characteristic commands are written to, or null if none is configured. */
+    public CommandEndpoint getCommandEndpoint() {
+        return commandEndpoint;
+    }
+
+    private static CommandEndpoint parseCommandEndpoint(Properties properties) {
+        if (properties.getProperty("command.characteristic") == null) {
+            return null;
+        }
+        UUID service = UUID.fromString(require(properties, "command.service"));
+        UUID characteristic = UUID.fromString(require(properties, "command.characteristic"));
+        int credits = Integer.parseInt(properties.getProperty("command.credits",
+                String.valueOf(CommandChannel.NO_FLOW_CONTROL)).trim());
+        if (credits < 0 && credits != CommandChannel.NO_FLOW_CONTROL) {
+            throw new IllegalArgumentException("command.credits must not be negative: " + credits);
+        }
+        String creditCharacteristic = properties.getProperty("command.creditCharacteristic", "").trim();
+        return new CommandEndpoint(service, characteristic, credits,
+                creditCharacteristic.isEmpty() ? null : UUID.fromString(creditCharacteristic));
+    }
+
+    private static PayloadSchema parseSchema(Properties properties, String name) {
+        UUID service = UUID.fromString(require(properties, name + ".service"));
+        UUID characteristic = UUID.fromString(require(properties, name + ".characteristic"));
+
+        String byteOrder = properties.getProperty(name + ".byteOrder", "little").trim();
+        boolean littleEndian;
+        if (byteOrder.equalsIgnoreCase("little")) {
+            littleEndian = true;
+        } else if (byteOrder.equalsIgnoreCase("big")) {
+            littleEndian = false;
+        } else {
+            throw new IllegalArgumentException(name + ".byteOrder must be little or big: " + byteOrder);
+        }
+
+        List<PayloadSchema.Field> fields = new ArrayList<>();
+        for (String spec : require(properties, name + ".fields").split(",")) {
+            fields.add(parseField(name, spec.trim()));
+        }
+
+        boolean framed = Boolean.parseBoolean(properties.getProperty(name + ".framed", "false").trim());
+        long samplePeriodNanos = Long.parseLong(properties.getProperty(name + ".samplePeriodUs", "0").trim()) * 1000;
+        int maxFrameSize = Integer.parseInt(properties.getProperty(name + ".maxFrameSize",
+                String.valueOf(DEFAULT_MAX_FRAME_SIZE)).trim());
+        double clockNanosPerTick = Double.parseDouble(properties.getProperty(name + ".clockTickUs", "0").trim()) * 1000;
+
+        PayloadSchema schema = new PayloadSchema(name, service, characteristic, littleEndian, fields, framed,
+                samplePeriodNanos, maxFrameSize, clockNanosPerTick);
+        if (framed && samplePeriodNanos <= 0) {
+            throw new IllegalArgumentException(name + ".samplePeriodUs must be positive for a framed schema: "
+                    + samplePeriodNanos / 1000);
+        }
+        if (maxFrameSize < schema.getSampleSize()) {
+            throw new IllegalArgumentException(name + ".maxFrameSize must hold at least one "
+                    + schema.getSampleSize() + "-byte sample: " + maxFrameSize);
+        }
+        return schema;
+    }
+
+    private static PayloadSchema.Field parseField(String schema, String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length < 2 || parts.length > 4 || parts[0].trim().isEmpty()) {
+            throw new IllegalArgumentException(schema + ".fields entry must be name:type[:scale[:unit]]: " + spec);
+        }
+        FieldType type;
+        try {
+            type = FieldType.parse(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(schema + ".fields has unknown type: " + spec, e);
+        }
+        double scale = parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 1.0;
+        String unit = parts.length > 3 ? parts[3].trim() : "";
+        return new PayloadSchema.Field(parts[0].trim(), type, scale, unit);
+    }
+
+    private static String require(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing schema property " + key);
+        }
+        return value.trim();
+    }
+}
@@ -1,21 +1,98 @@
 package com.example.datareader;
 
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.Observer;
 
 import com.example.datareader.databinding.ActivitySensorDataBinding;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class SensorData extends AppCompatActivity {
 
     public static final String EXTRA_DEVICE_NAME = "DEVICE_NAME";
     public static final String EXTRA_DEVICE_ADDRESS = "DEVICE_ADDRESS";
 
+    private static final long FUSION_GRID_PERIOD_NANOS = 10_000_000L;
+    private static final long FUSION_MAX_SKEW_NANOS = 20_000_000L;
+    /** Added to the longest frame of the registered schemas, whose samples are stamped back from arrival. */
+    private static final long FUSION_LATENCY_MARGIN_NANOS = 200_000_000L;
+    private static final int FUSION_BUFFER_CAPACITY = 256;
+    private static final long UI_REFRESH_INTERVAL_MS = 250;
+    private static final long STATS_REFRESH_INTERVAL_MS = 1000;
+    private static final int STATS_SKETCH_K = 200;
+    private static final long STATS_WINDOW_NANOS = 10_000_000_000L;
+    private static final int STATS_WINDOW_PANES = 10;
+
+    private static final int EXPORT_CSV = 0;
+    private static final int EXPORT_COLUMNAR = 1;
+    private static final int EXPORT_RAW = 2;
+
     private CustomBluetooth myBluetooth;
+    private FusionEngine fusionEngine;
+    private SessionRecorder recorder;
+    private SessionStatistics statistics;
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService statsExecutor = Executors.newSingleThreadExecutor();
+    private boolean statsRefreshPending = false;
+
+    private final ActivityResultLauncher<String> exportCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/csv"),
+            uri -> exportSession(uri, EXPORT_CSV));
+    private final ActivityResultLauncher<String> exportColumnarLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/octet-stream"),
+            uri -> exportSession(uri, EXPORT_COLUMNAR));
+    private final ActivityResultLauncher<String> exportRawLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/octet-stream"),
+            uri -> exportSession(uri, EXPORT_RAW));
+    private final Object fusedRowLock = new Object();
+    private double[] latestFusedRow;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            fusionEngine.advanceTo(SystemClock.elapsedRealtimeNanos());
+            showFusedRow();
+            uiHandler.postDelayed(this, UI_REFRESH_INTERVAL_MS);
+        }
+    };
+
+    // The statistics text takes tens of milliseconds to build, so it is built off the UI thread.
+    private final Runnable statsRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!statsRefreshPending) {
+                statsRefreshPending = true;
+                statsExecutor.execute(() -> {
+                    String text = buildStatsText();
+                    uiHandler.post(() -> {
+                        statsRefreshPending = false;
+                        binding.lblStats.setText(text);
+                    });
+                });
+            }
+            uiHandler.postDelayed(this, STATS_REFRESH_INTERVAL_MS);
+        }
+    };
 
     private ActivitySensorDataBinding binding;
     private String bytesToHex(byte[] bytes) {
@@ -36,6 +113,30 @@ public class SensorData extends AppCompatActivity {
 
         myBluetooth = CustomBluetooth.getInstance(this);
 
+        long fusionMaxLatencyNanos = myBluetooth.getSchemaRegistry().getMaxFrameDurationNanos()
+                + FUSION_LATENCY_MARGIN_NANOS;
+        fusionEngine = new FusionEngine(FUSION_GRID_PERIOD_NANOS, FUSION_MAX_SKEW_NANOS,
+                fusionMaxLatencyNanos, FusionEngine.Interpolation.ZERO_ORDER_HOLD,
+                FUSION_BUFFER_CAPACITY, new FusionEngine.Listener() {
+            @Override
+            public void onMergedSample(int streamIndex, String streamId, long timestampNanos, double[] values) {
+            }
+
+            @Override
+            public void onRow(long timestampNanos, double[] row) {
+                synchronized (fusedRowLock) {
+                    if (latestFusedRow == null || latestFusedRow.length != row.length) {
+                        latestFusedRow = new double[row.length];
+                    }
+                    System.arraycopy(row, 0, latestFusedRow, 0, row.length);
+                }
+            }
+        });
+        myBluetooth.addSampleListener(fusionEngine);
+        statistics = new SessionStatistics(STATS_SKETCH_K, STATS_WINDOW_NANOS, STATS_WINDOW_PANES);
+        myBluetooth.addSampleListener(statistics);
+        startRecording();
+
         myBluetooth.isConnected.observe(this, new Observer<Boolean>() {
             @Override
             public void onChanged(Boolean connected) {
@@ -46,13 +147,14 @@ public class SensorData extends AppCompatActivity {
             }
         });
 
-        myBluetooth.receivedData.observe(this, new Observer<byte[]>() {
+        myBluetooth.receivedData.observe(this, new Observer<SensorPacket>() {
             @Override
-            public void onChanged(byte[] data) {
-                if (data != null) {
-                    String hexData = bytesToHex(data);
+            public void onChanged(SensorPacket packet) {
+                if (packet != null && packet.value != null) {
+                    String hexData = bytesToHex(packet.value);
                     binding.lblDataValue.setText(hexData);
-                    Log.d("SensorData", "UI updated with data: " + hexData);
+                    long delayMs = (SystemClock.elapsedRealtimeNanos() - packet.arrivalNanos) / 1_000_000;
+                    Log.d("SensorData", "UI updated with data: " + hexData + " (" + delayMs + " ms after arrival)");
                 }
             }
         });
@@ -60,6 +162,13 @@ public class SensorData extends AppCompatActivity {
         String deviceName = getIntent().getStringExtra(EXTRA_DEVICE_NAME);
         String deviceAddress = getIntent().getStringExtra(EXTRA_DEVICE_ADDRESS);
 
+        if (deviceAddress != null) {
+            // Registered up front so no stream's first frame arrives behind the watermark.
+            for (PayloadSchema schema : myBluetooth.getSchemaRegistry().getSchemas()) {
+                fusionEngine.addStream(CharacteristicStream.streamId(deviceAddress, schema), schema);
+            }
+        }
+
         if (getSupportActionBar() != null && deviceName != null) {
             getSupportActionBar().setTitle(deviceName);
         }
@@ -70,6 +179,8 @@ public class SensorData extends AppCompatActivity {
         binding.btnDisconnect.setText("Disconnect");
         Log.d("SensorData", "Button set.");
 
+        binding.btnExport.setOnClickListener(v -> chooseExportFormat());
+
         binding.btnDisconnect.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -84,10 +195,130 @@ public class SensorData extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        uiHandler.post(refreshRunnable);
+        uiHandler.post(statsRefreshRunnable);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        uiHandler.removeCallbacks(refreshRunnable);
+        uiHandler.removeCallbacks(statsRefreshRunnable);
+    }
+
+    private String buildStatsText() {
+        StringBuilder sb = new StringBuilder(statistics.summary());
+        for (CharacteristicStream stream : myBluetooth.getStreams()) {
+            sb.append('\n').append(stream.summary());
+        }
+        sb.append('\n').append(myBluetooth.getPipeline().summary());
+        return sb.toString();
+    }
+
+    private void startRecording() {
+        File sessionDir = new File(getFilesDir(), "sessions");
+        if (!sessionDir.isDirectory() && !sessionDir.mkdirs()) {
+            Log.e("SensorData", "Could not create " + sessionDir);
+            return;
+        }
+        File sessionFile = new File(sessionDir, "session-" + System.currentTimeMillis() + SessionRecorder.FILE_EXTENSION);
+        try {
+            recorder = new SessionRecorder(sessionFile);
+            myBluetooth.addSampleSink(recorder);
+            Log.i("SensorData", "Recording session to " + sessionFile);
+        } catch (IOException e) {
+            Log.e("SensorData", "Could not start recording to " + sessionFile, e);
+        }
+    }
+
+    private void chooseExportFormat() {
+        if (recorder == null) {
+            Toast.makeText(this, "No session is being recorded", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String baseName = recorder.getFile().getName().replace(SessionRecorder.FILE_EXTENSION, "");
+        new AlertDialog.Builder(this)
+                .setTitle("Export session as")
+                .setItems(new String[]{"CSV", "Columnar binary", "Raw session file"}, (dialog, which) -> {
+                    if (which == EXPORT_CSV) {
+                        exportCsvLauncher.launch(baseName + ".csv");
+                    } else if (which == EXPORT_COLUMNAR) {
+                        exportColumnarLauncher.launch(baseName + ".src");
+                    } else {
+                        exportRawLauncher.launch(baseName + SessionRecorder.FILE_EXTENSION);
+                    }
+                })
+                .show();
+    }
+
+    private void exportSession(Uri uri, int format) {
+        if (uri == null || recorder == null) {
+            return;
+        }
+        final SessionRecorder session = recorder;
+        exportExecutor.execute(() -> {
+            try (ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(uri, "wt");
+                 FileOutputStream out = new FileOutputStream(descriptor.getFileDescriptor())) {
+                session.flush();
+                SessionExporter.Result result;
+                if (format == EXPORT_CSV) {
+                    result = SessionExporter.exportCsv(session.getFile(), out.getChannel());
+                } else if (format == EXPORT_COLUMNAR) {
+                    result = SessionExporter.exportColumnar(session.getFile(), out.getChannel());
+                } else {
+                    result = SessionExporter.exportRaw(session.getFile(), out.getChannel());
+                }
+                String message = String.format(Locale.US, "Exported %.2f MB at %.1f MB/s",
+                        result.bytesWritten / 1e6, result.getMegabytesPerSecond());
+                Log.i("SensorData", message);
+                runOnUiThread(() -> Toast.makeText(SensorData.this, message, Toast.LENGTH_LONG).show());
+            } catch (IOException | RuntimeException e) {
+                Log.e("SensorData", "Export failed.", e);
+                runOnUiThread(() -> Toast.makeText(SensorData.this, "Export failed: " + e.getMessage(), Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+
+    private void showFusedRow() {
+        List<String> columns = fusionEngine.getColumnNames();
+        StringBuilder sb = new StringBuilder();
+        synchronized (fusedRowLock) {
+            if (latestFusedRow == null) {
+                return;
+            }
+            for (int i = 0; i < latestFusedRow.length && i < columns.size(); i++) {
+                sb.append(columns.get(i)).append(": ").append(String.format("%.3f", latestFusedRow[i])).append('\n');
+            }
+        }
+        binding.lblFusedValue.setText(sb.toString().trim());
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         Log.d("SensorData", "onDestroy called, ensuring disconnection.");
+        myBluetooth.removeSampleListener(fusionEngine);
+        myBluetooth.removeSampleListener(statistics);
+        if (recorder != null) {
+            myBluetooth.removeSampleSink(recorder);
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                Log.e("SensorData", "Failed to finish recording.", e);
+            }
+            String baseName = recorder.getFile().getName().replace(SessionRecorder.FILE_EXTENSION, "");
+            File statsFile = new File(recorder.getFile().getParentFile(), baseName + SessionStatistics.FILE_EXTENSION);
+            try {
+                statistics.save(statsFile);
+            } catch (IOException e) {
+                Log.e("SensorData", "Failed to save statistics to " + statsFile, e);
+            }
+        }
+        exportExecutor.shutdown();
+        statsExecutor.shutdown();
         if (myBluetooth != null) {
             myBluetooth.disconnect();
         }
@@ -0,0 +1,19 @@
+package com.example.datareader;
+
+import java.util.UUID;
+
+/**
+ * A characteristic value as received, stamped with {@code SystemClock.elapsedRealtimeNanos()}
+ * inside the GATT callback so that main-thread scheduling does not skew the timing.
+ */
+public class SensorPacket {
+    public final UUID characteristicUuid;
+    public final byte[] value;
+    public final long arrivalNanos;
+
+    public SensorPacket(UUID characteristicUuid, byte[] value, long arrivalNanos) {
+        this.characteristicUuid = characteristicUuid;
+        this.value = value;
+        this.arrivalNanos = arrivalNanos;
+    }
+}
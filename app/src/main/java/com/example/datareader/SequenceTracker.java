@@ -0,0 +1,154 @@
+package com.example.datareader;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the 8-bit notification sequence counter and classifies each arrival as in order,
+ * after a gap, a duplicate or a late (reordered) packet.
+ *
+ * Sequence numbers wrap at 256. A number up to 127 ahead of the highest one seen is treated as
+ * new, anything else as a look back at older traffic. Packets that a gap counted as lost and
+ * that later arrive out of order are taken back off the loss count.
+ *
+ * The counter alone cannot tell a dropout of 128 or more notifications from old traffic, so
+ * {@link #track(int, long, long)} also takes the arrival time and the nominal notification
+ * interval. Only when the counter cannot decide, i.e. the packet repeats the highest number or
+ * looks like older traffic, and the time since the highest packet covers half the sequence range
+ * or more, is the packet taken as new and the number missed estimated from the elapsed time. A
+ * small step forward stays a normal advance however long it took, since stalls in delivery and
+ * pauses in streaming are far more common than dropouts of a whole counter cycle.
+ */
+public class SequenceTracker {
+    public static final int IN_ORDER = 0;
+    public static final int GAP = 1;
+    public static final int DUPLICATE = 2;
+    public static final int REORDERED = 3;
+
+    private static final int MODULUS = 256;
+    private static final int HALF_RANGE = MODULUS / 2;
+
+    private final long[] seen = new long[MODULUS / 64];
+    private boolean started = false;
+    private int highest;
+    private int history;
+    private long highestArrivalNanos;
+
+    private long received;
+    private long lost;
+    private long duplicates;
+    private long reordered;
+
+    /** Classifies a sequence number without timing information. */
+    public int track(int sequence) {
+        return track(sequence, 0, 0);
+    }
+
+    /**
+     * @param arrivalNanos          when the packet arrived
+     * @param expectedIntervalNanos nominal time between notifications, or 0 if unknown, which
+     *                              disables the dropout check
+     */
+    public int track(int sequence, long arrivalNanos, long expectedIntervalNanos) {
+        sequence &= MODULUS - 1;
+        if (!started) {
+            started = true;
+            highest = sequence;
+            highestArrivalNanos = arrivalNanos;
+            history = 1;
+            mark(sequence);
+            received++;
+            return IN_ORDER;
+        }
+
+        int ahead = (sequence - highest) & (MODULUS - 1);
+        long elapsed = arrivalNanos - highestArrivalNanos;
+        if ((ahead == 0 || ahead >= HALF_RANGE)
+                && expectedIntervalNanos > 0 && elapsed >= HALF_RANGE * expectedIntervalNanos) {
+            // Pick the advance congruent to the sequence difference that best matches the time.
+            long estimated = Math.round((double) elapsed / expectedIntervalNanos);
+            long advance = ahead + Math.round((double) (estimated - ahead) / MODULUS) * MODULUS;
+            if (advance < 1) {
+                advance += MODULUS;
+            }
+            Arrays.fill(seen, 0);
+            mark(sequence);
+            highest = sequence;
+            highestArrivalNanos = arrivalNanos;
+            history = 1;
+            received++;
+            lost += advance - 1;
+            return advance == 1 ? IN_ORDER : GAP;
+        }
+        if (ahead != 0 && ahead < HALF_RANGE) {
+            for (int i = 1; i < ahead; i++) {
+                clear(highest + i);
+            }
+            mark(sequence);
+            highest = sequence;
+            highestArrivalNanos = arrivalNanos;
+            history = Math.min(MODULUS, history + ahead);
+            received++;
+            if (ahead == 1) {
+                return IN_ORDER;
+            }
+            lost += ahead - 1;
+            return GAP;
+        }
+
+        int behind = (highest - sequence) & (MODULUS - 1);
+        if (isMarked(sequence) || behind >= history) {
+            duplicates++;
+            return DUPLICATE;
+        }
+        mark(sequence);
+        received++;
+        reordered++;
+        lost--;
+        return REORDERED;
+    }
+
+    public void reset() {
+        Arrays.fill(seen, 0);
+        started = false;
+        history = 0;
+        received = 0;
+        lost = 0;
+        duplicates = 0;
+        reordered = 0;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getLost() {
+        return lost;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getReordered() {
+        return reordered;
+    }
+
+    public double getLossRate() {
+        long expected = received + lost;
+        return expected == 0 ? 0.0 : (double) lost / expected;
+    }
+
+    private void mark(int sequence) {
+        sequence &= MODULUS - 1;
+        seen[sequence >>> 6] |= 1L << (sequence & 63);
+    }
+
+    private void clear(int sequence) {
+        sequence &= MODULUS - 1;
+        seen[sequence >>> 6] &= ~(1L << (sequence & 63));
+    }
+
+    private boolean isMarked(int sequence) {
+        return (seen[sequence >>> 6] & (1L << (sequence & 63))) != 0;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.datareader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exports recorded sessions. Every export streams the session through fixed-size buffers, so
+ * memory use does not grow with the session length.
+ *
+ * CSV has a {@code timestamp_ns,stream} prefix followed by one column per stream channel; each row
+ * fills in the columns of the stream it came from.
+ *
+ * The columnar format is a little-endian header ({@link #COLUMNAR_MAGIC}, {@link #COLUMNAR_VERSION},
+ * stream count u16, then per stream its id, channel count u16 and channel names, strings as u16
+ * length plus UTF-8) followed by blocks of up to {@link #BLOCK_ROWS} samples of one stream: stream
+ * index u16, row count i32, the first timestamp as i64, the remaining timestamps as zigzag varint
+ * deltas, then each channel as a run of f32.
+ *
+ * Raw export copies the session file itself with {@link FileChannel#transferTo}.
+ */
+public class SessionExporter {
+    public static final int COLUMNAR_MAGIC = 0x31435253; // "SRC1"
+    public static final short COLUMNAR_VERSION = 1;
+    public static final int BLOCK_ROWS = 4096;
+
+    private static final int CSV_DECIMALS = 6;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static class Result {
+        public final long bytesWritten;
+        public final long elapsedNanos;
+
+        Result(long bytesWritten, long elapsedNanos) {
+            this.bytesWritten = bytesWritten;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : bytesWritten / 1e6 / (elapsedNanos / 1e9);
+        }
+    }
+
+    private SessionExporter() {
+    }
+
+    public static Result exportCsv(File session, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        try (SessionReader reader = new SessionReader(session)) {
+            final List<SessionReader.StreamInfo> streams = reader.readStreams();
+            final int[] columnOffsets = new int[streams.size()];
+            int columns = 0;
+            for (SessionReader.StreamInfo stream : streams) {
+                columnOffsets[stream.index] = columns;
+                columns += stream.channelNames.length;
+            }
+            final int columnCount = columns;
+
+            final CsvWriter csv = new CsvWriter(out, CSV_DECIMALS);
+            csv.field("timestamp_ns").field("stream");
+            for (SessionReader.StreamInfo stream : streams) {
+                for (String name : stream.channelNames) {
+                    csv.field(stream.id + "." + name);
+                }
+            }
+            csv.endRow();
+
+            reader.read(new SessionReader.Visitor() {
+                @Override
+                public void onStream(SessionReader.StreamInfo stream) {
+                }
+
+                @Override
+                public void onSample(SessionReader.StreamInfo stream, long timestampNanos, double[] values) throws IOException {
+                    csv.field(timestampNanos).field(stream.id);
+                    int first = columnOffsets[stream.index];
+                    for (int column = 0; column < columnCount; column++) {
+                        if (column >= first && column < first + values.length) {
+                            csv.field(values[column - first]);
+                        } else {
+                            csv.emptyField();
+                        }
+                    }
+                    csv.endRow();
+                }
+            });
+            csv.flush();
+            return new Result(csv.getBytesWritten(), System.nanoTime() - start);
+        }
+    }
+
+    public static Result exportColumnar(File session, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        try (SessionReader reader = new SessionReader(session)) {
+            List<SessionReader.StreamInfo> streams = reader.readStreams();
+            final BinaryOutput output = new BinaryOutput(out);
+            output.ensureSpace(4 + 2 + 2);
+            output.buffer.putInt(COLUMNAR_MAGIC).putShort(COLUMNAR_VERSION).putShort((short) streams.size());
+            final List<Block> blocks = new ArrayList<>();
+            for (SessionReader.StreamInfo stream : streams) {
+                output.putString(stream.id);
+                output.ensureSpace(2);
+                output.buffer.putShort((short) stream.channelNames.length);
+                for (String name : stream.channelNames) {
+                    output.putString(name);
+                }
+                blocks.add(new Block(stream.index, stream.channelNames.length));
+            }
+
+            reader.read(new SessionReader.Visitor() {
+                @Override
+                public void onStream(SessionReader.StreamInfo stream) {
+                }
+
+                @Override
+                public void onSample(SessionReader.StreamInfo stream, long timestampNanos, double[] values) throws IOException {
+                    Block block = blocks.get(stream.index);
+                    block.add(timestampNanos, values);
+                    if (block.rows == BLOCK_ROWS) {
+                        block.writeTo(output);
+                    }
+                }
+            });
+            for (Block block : blocks) {
+                if (block.rows > 0) {
+                    block.writeTo(output);
+                }
+            }
+            output.drain();
+            return new Result(output.bytesWritten, System.nanoTime() - start);
+        }
+    }
+
+    public static Result exportRaw(File session, WritableByteChannel out) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel in = new FileInputStream(session).getChannel()) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+            return new Result(position, System.nanoTime() - start);
+        }
+    }
+
+    private static class Block {
+        final int streamIndex;
+        final int channels;
+        final long[] times = new long[BLOCK_ROWS];
+        final float[] values;
+        int rows;
+
+        Block(int streamIndex, int channels) {
+            this.streamIndex = streamIndex;
+            this.channels = channels;
+            this.values = new float[BLOCK_ROWS * channels];
+        }
+
+        void add(long timestampNanos, double[] sample) {
+            times[rows] = timestampNanos;
+            for (int c = 0; c < channels; c++) {
+                values[c * BLOCK_ROWS + rows] = (float) sample[c];
+            }
+            rows++;
+        }
+
+        void writeTo(BinaryOutput output) throws IOException {
+            output.ensureSpace(2 + 4 + 8);
+            output.buffer.putShort((short) streamIndex).putInt(rows).putLong(times[0]);
+            for (int r = 1; r < rows; r++) {
+                output.putZigZagVarint(times[r] - times[r - 1]);
+            }
+            for (int c = 0; c < channels; c++) {
+                for (int r = 0; r < rows; r++) {
+                    output.ensureSpace(4);
+                    output.buffer.putFloat(values[c * BLOCK_ROWS + r]);
+                }
+            }
+            rows = 0;
+        }
+    }
+
+    private static class BinaryOutput {
+        final WritableByteChannel out;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long bytesWritten;
+
+        BinaryOutput(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureSpace(2 + bytes.length);
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+
+        void putZigZagVarint(long value) throws IOException {
+            ensureSpace(10);
+            long bits = (value << 1) ^ (value >> 63);
+            while ((bits & ~0x7FL) != 0) {
+                buffer.put((byte) ((bits & 0x7F) | 0x80));
+                bits >>>= 7;
+            }
+            buffer.put((byte) bits);
+        }
+
+        void ensureSpace(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
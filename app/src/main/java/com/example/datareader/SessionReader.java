@@ -0,0 +1,182 @@
+package com.example.datareader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams the records of a {@link SessionRecorder} file through a fixed-size buffer, so memory use
+ * does not depend on the session length. A record cut short at the end of the file, as happens
+ * when reading a session that is still being recorded, ends the read.
+ *
+ * Every pass reads the file up to the size it had when the reader was opened, so records the
+ * recorder appends in the meantime do not show up in one pass and not in another.
+ */
+public class SessionReader implements Closeable {
+    public static class StreamInfo {
+        public final int index;
+        public final String id;
+        public final String[] channelNames;
+
+        StreamInfo(int index, String id, String[] channelNames) {
+            this.index = index;
+            this.id = id;
+            this.channelNames = channelNames;
+        }
+    }
+
+    public interface Visitor {
+        void onStream(StreamInfo stream) throws IOException;
+
+        /** {@code values} is reused for the stream's next sample. */
+        void onSample(StreamInfo stream, long timestampNanos, double[] values) throws IOException;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    public SessionReader(File file) throws IOException {
+        this.channel = new FileInputStream(file).getChannel();
+        this.size = channel.size();
+    }
+
+    /** Lists the streams of the session without decoding its samples. */
+    public List<StreamInfo> readStreams() throws IOException {
+        final List<StreamInfo> streams = new ArrayList<>();
+        scan(new Visitor() {
+            @Override
+            public void onStream(StreamInfo stream) {
+                streams.add(stream);
+            }
+
+            @Override
+            public void onSample(StreamInfo stream, long timestampNanos, double[] values) {
+            }
+        }, false);
+        return streams;
+    }
+
+    public void read(Visitor visitor) throws IOException {
+        scan(visitor, true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void scan(Visitor visitor, boolean decodeSamples) throws IOException {
+        channel.position(0);
+        buffer.clear().flip();
+        if (!fill(6)) {
+            throw new IOException("Session file is too short");
+        }
+        if (buffer.getInt() != SessionRecorder.MAGIC) {
+            throw new IOException("Not a session file");
+        }
+        short version = buffer.getShort();
+        if (version != SessionRecorder.VERSION) {
+            throw new IOException("Unsupported session file version " + version);
+        }
+
+        List<StreamInfo> streams = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        while (fill(3)) {
+            byte type = buffer.get();
+            int index = buffer.getShort() & 0xFFFF;
+            if (type == SessionRecorder.RECORD_STREAM) {
+                StreamInfo stream = readStream(index);
+                if (stream == null) {
+                    return;
+                }
+                streams.add(stream);
+                values.add(new double[stream.channelNames.length]);
+                visitor.onStream(stream);
+            } else if (type == SessionRecorder.RECORD_SAMPLE) {
+                if (index >= streams.size()) {
+                    throw new IOException("Sample for undeclared stream " + index);
+                }
+                StreamInfo stream = streams.get(index);
+                double[] sample = values.get(index);
+                if (!fill(8 + 8 * sample.length)) {
+                    return;
+                }
+                if (!decodeSamples) {
+                    buffer.position(buffer.position() + 8 + 8 * sample.length);
+                    continue;
+                }
+                long timestamp = buffer.getLong();
+                for (int i = 0; i < sample.length; i++) {
+                    sample[i] = buffer.getDouble();
+                }
+                visitor.onSample(stream, timestamp, sample);
+            } else {
+                throw new IOException("Unknown record type " + type);
+            }
+        }
+    }
+
+    private StreamInfo readStream(int index) throws IOException {
+        String id = readString();
+        if (id == null || !fill(2)) {
+            return null;
+        }
+        String[] names = new String[buffer.getShort() & 0xFFFF];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = readString();
+            if (names[i] == null) {
+                return null;
+            }
+        }
+        return new StreamInfo(index, id, names);
+    }
+
+    private String readString() throws IOException {
+        if (!fill(2)) {
+            return null;
+        }
+        int length = buffer.getShort() & 0xFFFF;
+        if (!fill(length)) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /** Makes at least {@code bytes} readable; false at the end of the file. */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        if (bytes > buffer.capacity()) {
+            throw new IOException("Record of " + bytes + " bytes exceeds the read buffer");
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                long left = size - channel.position();
+                if (left <= 0) {
+                    return false;
+                }
+                buffer.limit((int) Math.min(buffer.capacity(), buffer.position() + left));
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.datareader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends decoded samples to a session file through a fixed-size buffer.
+ *
+ * The file is a little-endian header ({@link #MAGIC}, {@link #VERSION}) followed by records.
+ * A stream record (type byte, stream index u16, stream id, channel count u16, channel names) is
+ * written before a stream's first sample. A sample record is a type byte, the stream index u16,
+ * the timestamp in nanoseconds as i64 and one f64 per channel. Strings are a u16 byte length
+ * followed by UTF-8.
+ */
+public class SessionRecorder implements SampleListener, Closeable {
+    public static final int MAGIC = 0x31535253; // "SRS1"
+    public static final short VERSION = 1;
+    public static final String FILE_EXTENSION = ".srs";
+
+    static final byte RECORD_STREAM = 1;
+    static final byte RECORD_SAMPLE = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final Map<String, Integer> streamIndexes = new HashMap<>();
+    private long samplesWritten;
+    private boolean closed = false;
+    private IOException failure;
+
+    public SessionRecorder(File file) throws IOException {
+        this.file = file;
+        this.channel = new FileOutputStream(file).getChannel();
+        buffer.putInt(MAGIC).putShort(VERSION);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void onSample(String streamId, PayloadSchema schema, long timestampNanos, double[] values) {
+        if (closed || failure != null) {
+            return;
+        }
+        try {
+            Integer index = streamIndexes.get(streamId);
+            if (index == null) {
+                index = streamIndexes.size();
+                streamIndexes.put(streamId, index);
+                writeStream(index, streamId, schema);
+            }
+            ensureSpace(1 + 2 + 8 + 8 * values.length);
+            buffer.put(RECORD_SAMPLE).putShort(index.shortValue()).putLong(timestampNanos);
+            for (double value : values) {
+                buffer.putDouble(value);
+            }
+            samplesWritten++;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /** Writes buffered records to the file so readers see every sample recorded so far. */
+    public synchronized void flush() throws IOException {
+        checkFailure();
+        if (!closed) {
+            drain();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (failure == null) {
+                drain();
+            }
+        } finally {
+            closed = true;
+            channel.close();
+        }
+        checkFailure();
+    }
+
+    public synchronized long getSamplesWritten() {
+        return samplesWritten;
+    }
+
+    /** The write error that stopped recording, or null. */
+    public synchronized IOException getFailure() {
+        return failure;
+    }
+
+    private void writeStream(int index, String streamId, PayloadSchema schema) throws IOException {
+        ensureSpace(1 + 2 + stringSize(streamId) + 2);
+        buffer.put(RECORD_STREAM).putShort((short) index);
+        putString(streamId);
+        buffer.putShort((short) schema.getChannelCount());
+        for (PayloadSchema.Field field : schema.getFields()) {
+            ensureSpace(stringSize(field.name));
+            putString(field.name);
+        }
+    }
+
+    private static int stringSize(String value) {
+        return 2 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
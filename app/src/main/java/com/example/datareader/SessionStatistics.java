@@ -0,0 +1,202 @@
+package com.example.datareader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-channel streaming statistics for every stream of a session. Sessions are saved next to
+ * their recording {@code <session>.srs} as {@code <session>.stats} and can be loaded and merged
+ * with other sessions.
+ */
+public class SessionStatistics implements SampleListener {
+    public static final String FILE_EXTENSION = ".stats";
+
+    private static final int MAGIC = 0x31545353; // "SST1"
+    private static final int VERSION = 1;
+    private static final double[] REPORTED_QUANTILES = {0.5, 0.95, 0.99};
+
+    private final int sketchK;
+    private final long windowNanos;
+    private final int paneCount;
+    private final Map<String, StreamStatistics> streams = new LinkedHashMap<>();
+
+    private static class StreamStatistics {
+        final String[] channelNames;
+        final ChannelStatistics[] channels;
+
+        StreamStatistics(String[] channelNames, ChannelStatistics[] channels) {
+            this.channelNames = channelNames;
+            this.channels = channels;
+        }
+    }
+
+    private static class StreamSnapshot {
+        final String[] channelNames;
+        final ChannelStatistics.Snapshot[] channels;
+
+        StreamSnapshot(String[] channelNames, ChannelStatistics.Snapshot[] channels) {
+            this.channelNames = channelNames;
+            this.channels = channels;
+        }
+    }
+
+    public SessionStatistics(int sketchK, long windowNanos, int paneCount) {
+        this.sketchK = sketchK;
+        this.windowNanos = windowNanos;
+        this.paneCount = paneCount;
+    }
+
+    @Override
+    public synchronized void onSample(String streamId, PayloadSchema schema, long timestampNanos, double[] values) {
+        StreamStatistics stream = streams.get(streamId);
+        if (stream == null) {
+            List<PayloadSchema.Field> fields = schema.getFields();
+            String[] names = new String[fields.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = fields.get(i).name;
+            }
+            stream = addStream(streamId, names);
+        }
+        for (int i = 0; i < stream.channels.length && i < values.length; i++) {
+            stream.channels[i].add(timestampNanos, values[i]);
+        }
+    }
+
+    public synchronized ChannelStatistics getChannel(String streamId, int channel) {
+        StreamStatistics stream = streams.get(streamId);
+        return stream == null ? null : stream.channels[channel];
+    }
+
+    public synchronized List<String> getStreamIds() {
+        return new ArrayList<>(streams.keySet());
+    }
+
+    /**
+     * Adds the session statistics of {@code other}, matching streams and channels by name.
+     * {@code other} is copied first, so only one lock is held at a time.
+     */
+    public void merge(SessionStatistics other) {
+        Map<String, StreamSnapshot> sources = other.snapshotStreams();
+        synchronized (this) {
+            for (Map.Entry<String, StreamSnapshot> entry : sources.entrySet()) {
+                StreamSnapshot source = entry.getValue();
+                StreamStatistics target = streams.get(entry.getKey());
+                if (target == null) {
+                    target = addStream(entry.getKey(), source.channelNames);
+                } else if (target.channels.length != source.channels.length) {
+                    throw new IllegalArgumentException("Stream " + entry.getKey() + " has different channels");
+                }
+                for (int i = 0; i < source.channels.length; i++) {
+                    target.channels[i].mergeSession(source.channels[i].sessionStats,
+                            source.channels[i].sessionSketch);
+                }
+            }
+        }
+    }
+
+    /**
+     * One line per channel: session min/max/mean/stddev and p50/p95/p99, then the same for the
+     * sliding window. Only snapshots are taken under the lock; the window panes are merged, the
+     * quantiles sorted and the text formatted outside it, so a summary holds up {@link #onSample}
+     * only briefly. Building it still takes milliseconds per stream, so call it off the UI thread.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, StreamSnapshot> entry : snapshotStreams().entrySet()) {
+            StreamSnapshot stream = entry.getValue();
+            for (int i = 0; i < stream.channels.length; i++) {
+                ChannelStatistics.Snapshot channel = stream.channels[i];
+                RunningStats stats = channel.sessionStats;
+                RunningStats windowStats = channel.windowStats;
+                double[] session = channel.sessionSketch.quantiles(REPORTED_QUANTILES);
+                double[] window = channel.getWindowSketch().quantiles(REPORTED_QUANTILES);
+                sb.append(String.format(Locale.US,
+                        "%s.%s: min %.3f max %.3f mean %.3f sd %.3f | p50 %.3f p95 %.3f p99 %.3f"
+                                + " | window min %.3f max %.3f mean %.3f sd %.3f | p50 %.3f p95 %.3f p99 %.3f%n",
+                        entry.getKey(), stream.channelNames[i], stats.getMin(), stats.getMax(), stats.getMean(),
+                        stats.getStandardDeviation(), session[0], session[1], session[2],
+                        windowStats.getMin(), windowStats.getMax(), windowStats.getMean(),
+                        windowStats.getStandardDeviation(), window[0], window[1], window[2]));
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    public synchronized void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(streams.size());
+            for (Map.Entry<String, StreamStatistics> entry : streams.entrySet()) {
+                StreamStatistics stream = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(stream.channels.length);
+                for (int i = 0; i < stream.channels.length; i++) {
+                    out.writeUTF(stream.channelNames[i]);
+                    stream.channels[i].writeSessionTo(out);
+                }
+            }
+        }
+    }
+
+    public static SessionStatistics load(File file, int sketchK, long windowNanos, int paneCount) throws IOException {
+        SessionStatistics statistics = new SessionStatistics(sketchK, windowNanos, paneCount);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a statistics file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported statistics file version " + version);
+            }
+            int streamCount = in.readInt();
+            for (int s = 0; s < streamCount; s++) {
+                String streamId = in.readUTF();
+                int channelCount = in.readInt();
+                String[] names = new String[channelCount];
+                ChannelStatistics[] channels = new ChannelStatistics[channelCount];
+                for (int i = 0; i < channelCount; i++) {
+                    names[i] = in.readUTF();
+                    channels[i] = new ChannelStatistics(sketchK, windowNanos, paneCount);
+                    channels[i].readSessionFrom(in);
+                }
+                statistics.streams.put(streamId, new StreamStatistics(names, channels));
+            }
+        }
+        return statistics;
+    }
+
+    private synchronized Map<String, StreamSnapshot> snapshotStreams() {
+        Map<String, StreamSnapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<String, StreamStatistics> entry : streams.entrySet()) {
+            StreamStatistics stream = entry.getValue();
+            ChannelStatistics.Snapshot[] channels = new ChannelStatistics.Snapshot[stream.channels.length];
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = stream.channels[i].snapshot();
+            }
+            snapshots.put(entry.getKey(), new StreamSnapshot(stream.channelNames, channels));
+        }
+        return snapshots;
+    }
+
+    private StreamStatistics addStream(String streamId, String[] channelNames) {
+        ChannelStatistics[] channels = new ChannelStatistics[channelNames.length];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new ChannelStatistics(sketchK, windowNanos, paneCount);
+        }
+        StreamStatistics stream = new StreamStatistics(channelNames.clone(), channels);
+        streams.put(streamId, stream);
+        return stream;
+    }
+}
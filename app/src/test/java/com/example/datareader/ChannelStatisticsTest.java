@@ -0,0 +1,87 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChannelStatisticsTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void sessionStats_matchDirectComputation() {
+        ChannelStatistics channel = new ChannelStatistics(100, 10 * SECOND, 10);
+        double[] values = {2, 4, 4, 4, 5, 5, 7, 9};
+        for (int i = 0; i < values.length; i++) {
+            channel.add(i * SECOND, values[i]);
+        }
+        RunningStats stats = channel.getSessionStats();
+
+        assertEquals(8, stats.getCount());
+        assertEquals(5.0, stats.getMean(), 1e-12);
+        assertEquals(32.0 / 7, stats.getVariance(), 1e-12);
+        assertEquals(2.0, stats.getMin(), 0.0);
+        assertEquals(9.0, stats.getMax(), 0.0);
+        assertEquals(4.0, channel.getSessionSketch().quantile(0.5), 0.0);
+    }
+
+    @Test
+    public void window_dropsPanesThatSlideOut() {
+        ChannelStatistics channel = new ChannelStatistics(100, 4 * SECOND, 4);
+        for (int second = 0; second < 10; second++) {
+            channel.add(second * SECOND, second);
+        }
+
+        RunningStats window = channel.getWindowStats();
+        assertEquals(4, window.getCount());
+        assertEquals(6.0, window.getMin(), 0.0);
+        assertEquals(7.5, window.getMean(), 1e-12);
+        assertEquals(9.0, channel.getWindowSketch().quantile(1.0), 0.0);
+        assertEquals(10, channel.getSessionStats().getCount());
+    }
+
+    @Test
+    public void snapshot_matchesTheChannelAndIgnoresLaterSamples() {
+        ChannelStatistics channel = new ChannelStatistics(100, 4 * SECOND, 4);
+        for (int second = 0; second < 10; second++) {
+            channel.add(second * SECOND, second);
+        }
+        ChannelStatistics.Snapshot snapshot = channel.snapshot();
+        channel.add(10 * SECOND, 100.0);
+
+        assertEquals(10, snapshot.sessionStats.getCount());
+        assertEquals(9.0, snapshot.sessionSketch.getMax(), 0.0);
+        assertEquals(4, snapshot.windowStats.getCount());
+        assertEquals(7.5, snapshot.windowStats.getMean(), 1e-12);
+        assertEquals(6.0, snapshot.getWindowSketch().quantile(0.0), 0.0);
+        assertEquals(9.0, snapshot.getWindowSketch().quantile(1.0), 0.0);
+    }
+
+    @Test
+    public void sampleOlderThanWindow_onlyCountsForSession() {
+        ChannelStatistics channel = new ChannelStatistics(100, 2 * SECOND, 2);
+        channel.add(10 * SECOND, 1.0);
+        channel.add(SECOND, 100.0);
+
+        assertEquals(1, channel.getWindowStats().getCount());
+        assertEquals(100.0, channel.getSessionStats().getMax(), 0.0);
+    }
+
+    @Test
+    public void mergedRunningStats_equalCombinedInput() {
+        RunningStats left = new RunningStats();
+        RunningStats right = new RunningStats();
+        RunningStats all = new RunningStats();
+        for (int i = 0; i < 1000; i++) {
+            double value = Math.sin(i) * 100 + i;
+            (i < 300 ? left : right).add(value);
+            all.add(value);
+        }
+        left.merge(right);
+
+        assertEquals(all.getCount(), left.getCount());
+        assertEquals(all.getMean(), left.getMean(), 1e-9);
+        assertEquals(all.getVariance(), left.getVariance(), 1e-6);
+        assertEquals(all.getMin(), left.getMin(), 0.0);
+        assertEquals(all.getMax(), left.getMax(), 0.0);
+    }
+}
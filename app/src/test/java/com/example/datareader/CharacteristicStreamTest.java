@@ -0,0 +1,44 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CharacteristicStreamTest {
+    private static final long PERIOD = 1_000_000L;
+
+    private static PayloadSchema schema(double clockNanosPerTick) {
+        return new PayloadSchema("imu", UUID.randomUUID(), UUID.randomUUID(), true,
+                Collections.singletonList(new PayloadSchema.Field("x", FieldType.INT16, 1.0, "")),
+                true, PERIOD, 64, clockNanosPerTick);
+    }
+
+    private static byte[] frame(int sequence) {
+        byte[] value = new byte[FrameAssembler.HEADER_SIZE + 4];
+        value[0] = (byte) (FrameAssembler.FLAG_START | FrameAssembler.FLAG_END);
+        value[1] = (byte) sequence;
+        return value;
+    }
+
+    @Test
+    public void summary_reportsFrameLoss() {
+        CharacteristicStream stream = new CharacteristicStream("AA", schema(0), Collections.emptyList());
+        for (int sequence : new int[]{0, 1, 2, 5, 6}) {
+            stream.onNotification(frame(sequence), (sequence + 1) * 2 * PERIOD);
+        }
+
+        assertEquals("AA/imu: frames 5, loss 28.57% (2 lost, 0 reordered, 0 duplicate), malformed 0",
+                stream.summary());
+    }
+
+    @Test
+    public void summary_withDeviceClock_waitsForSynchronization() {
+        CharacteristicStream stream = new CharacteristicStream("AA", schema(1000), Collections.emptyList());
+        stream.onNotification(frame(0), 2 * PERIOD);
+
+        assertTrue(stream.summary(), stream.summary().endsWith(", clock not synchronized"));
+    }
+}
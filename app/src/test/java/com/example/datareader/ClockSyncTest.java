@@ -0,0 +1,57 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ClockSyncTest {
+    private static final double NANOS_PER_TICK = 1000.0;
+
+    @Test
+    public void exactObservations_recoverOffsetAndDrift() {
+        ClockSync sync = new ClockSync(NANOS_PER_TICK, 32, 4);
+        long offset = 5_000_000_000L;
+        for (long tick = 0; tick < 40_000; tick += 1000) {
+            sync.addObservation(tick, offset + Math.round(tick * 1000.05));
+        }
+
+        assertTrue(sync.isSynchronized());
+        assertEquals(50.0, sync.getDriftPpm(), 0.01);
+        assertEquals(offset, sync.getOffsetNanos(), 1.0);
+        assertEquals(offset + Math.round(50_000 * 1000.05), sync.toHostNanos(50_000), 1.0);
+        assertEquals(0.0, sync.getResidualJitterNanos(), 1.0);
+    }
+
+    @Test
+    public void noisyObservations_reportResidualJitter() {
+        ClockSync sync = new ClockSync(NANOS_PER_TICK, 256, 4);
+        Random random = new Random(42);
+        for (long tick = 0; tick < 25_600_000; tick += 100_000) {
+            long noise = Math.round(random.nextGaussian() * 2_000_000);
+            sync.addObservation(tick, tick * 1000 + noise);
+        }
+
+        assertEquals(2_000_000, sync.getResidualJitterNanos(), 300_000);
+        assertEquals(0.0, sync.getDriftPpm(), 100.0);
+    }
+
+    @Test
+    public void notSynchronized_untilMinimumObservations() {
+        ClockSync sync = new ClockSync(NANOS_PER_TICK, 8, 3);
+        sync.addObservation(0, 100);
+        sync.addObservation(1000, 1_000_100);
+        assertFalse(sync.isSynchronized());
+        sync.addObservation(2000, 2_000_100);
+        assertTrue(sync.isSynchronized());
+
+        sync.reset();
+        assertFalse(sync.isSynchronized());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowSmallerThanMinimum_isRejected() {
+        new ClockSync(NANOS_PER_TICK, 2, 3);
+    }
+}
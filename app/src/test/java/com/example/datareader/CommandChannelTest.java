@@ -0,0 +1,230 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CommandChannelTest {
+    private static class FakeTransport implements CommandChannel.Transport {
+        final List<byte[]> values = new ArrayList<>();
+        final List<Boolean> acknowledged = new ArrayList<>();
+        boolean accept = true;
+
+        @Override
+        public boolean write(byte[] value, boolean ack) {
+            if (accept) {
+                values.add(value);
+                acknowledged.add(ack);
+            }
+            return accept;
+        }
+    }
+
+    private static class FakeScheduler implements CommandChannel.Scheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.add(task);
+            delays.add(delayMillis);
+        }
+
+        /** Runs the tasks scheduled so far, like the clock passing all their delays. */
+        void runPending() {
+            List<Runnable> due = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+
+    private final FakeTransport transport = new FakeTransport();
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final List<Boolean> results = new ArrayList<>();
+
+    private CommandChannel channel(int credits) {
+        return new CommandChannel(transport, scheduler, credits);
+    }
+
+    @Test
+    public void nothingIsWritten_untilReady() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        channel.send(new byte[]{1});
+        assertTrue(transport.values.isEmpty());
+
+        channel.setReady(true);
+        assertEquals(1, transport.values.size());
+    }
+
+    @Test
+    public void smallCommands_areCoalescedUpToThePayloadSize() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        channel.setReady(true);
+        channel.send(new byte[]{1, 1});
+        // The first write is in flight; the next ones pack into one 20-byte payload and spill over.
+        for (int i = 0; i < 6; i++) {
+            channel.send(new byte[]{2, 2, 2, 2});
+        }
+        assertEquals(2, channel.getQueuedWrites());
+
+        channel.onWriteComplete(true);
+        channel.onWriteComplete(true);
+        channel.onWriteComplete(true);
+
+        assertEquals(3, transport.values.size());
+        assertEquals(20, transport.values.get(1).length);
+        assertEquals(4, transport.values.get(2).length);
+        assertEquals(26, channel.getBytesWritten());
+        assertEquals(7, channel.getCommandsQueued());
+    }
+
+    @Test
+    public void largerMtu_allowsLargerWrites() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        channel.setMtu(247);
+        channel.send(new byte[244]);
+        assertEquals(1, channel.getQueuedWrites());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void commandLongerThanPayload_isRejected() {
+        channel(CommandChannel.NO_FLOW_CONTROL).send(new byte[21]);
+    }
+
+    @Test
+    public void acknowledgedCommands_areNotCoalescedAndRecordRoundTrip() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        channel.sendAcknowledged(new byte[]{9});
+        channel.sendAcknowledged(new byte[]{8});
+        channel.setReady(true);
+        channel.onWriteComplete(true);
+        channel.onWriteComplete(true);
+
+        assertEquals(2, transport.values.size());
+        assertTrue(transport.acknowledged.get(0));
+        assertEquals(2, channel.getRoundTripStats().getCount());
+        assertTrue(channel.getRoundTripStats().getMin() >= 0);
+    }
+
+    @Test
+    public void bulkWrites_waitForCredits() {
+        CommandChannel channel = channel(1);
+        channel.setReady(true);
+        channel.send(new byte[]{1});
+        channel.onWriteComplete(true);
+        channel.send(new byte[]{2});
+        assertEquals(1, transport.values.size());
+        assertEquals(0, channel.getCredits());
+
+        channel.sendAcknowledged(new byte[]{3});
+        assertEquals("acknowledged write must not jump the queue", 1, transport.values.size());
+
+        channel.addCredits(2);
+        assertEquals(2, transport.values.size());
+        channel.onWriteComplete(true);
+        assertEquals(3, transport.values.size());
+        assertEquals(1, channel.getCredits());
+    }
+
+    @Test
+    public void refusedWrite_isRetriedWithBackoffAndKeepsItsPlace() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        transport.accept = false;
+        channel.sendAcknowledged(new byte[]{1}, results::add);
+        channel.sendAcknowledged(new byte[]{2});
+        channel.setReady(true);
+        assertEquals(1, channel.getWritesRetried());
+        assertEquals(2, channel.getQueuedWrites());
+
+        transport.accept = true;
+        scheduler.runPending();
+        assertEquals(1, transport.values.size());
+        assertArrayEquals(new byte[]{1}, transport.values.get(0));
+        channel.onWriteComplete(true);
+
+        assertEquals(Collections.singletonList(true), results);
+        assertEquals(2, transport.values.size());
+        assertEquals(0, channel.getWritesFailed());
+    }
+
+    @Test
+    public void writeRefusedOnEveryAttempt_failsItsCallback() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        transport.accept = false;
+        channel.sendAcknowledged(new byte[]{1}, results::add);
+        channel.setReady(true);
+        while (!scheduler.tasks.isEmpty()) {
+            scheduler.runPending();
+        }
+
+        assertEquals(Collections.singletonList(false), results);
+        assertEquals(CommandChannel.MAX_ATTEMPTS - 1, channel.getWritesRetried());
+        assertEquals(Arrays.asList(20L, 40L, 80L), scheduler.delays);
+        assertEquals(1, channel.getWritesFailed());
+        assertEquals(0, channel.getQueuedWrites());
+    }
+
+    @Test
+    public void refusedWrite_refundsItsCredit() {
+        CommandChannel channel = channel(1);
+        transport.accept = false;
+        channel.send(new byte[]{1});
+        channel.setReady(true);
+        assertEquals(1, channel.getCredits());
+
+        transport.accept = true;
+        scheduler.runPending();
+        assertEquals(1, transport.values.size());
+        assertEquals(0, channel.getCredits());
+    }
+
+    @Test
+    public void lostCompletion_timesOutAndTheQueueMovesOn() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        channel.sendAcknowledged(new byte[]{1}, results::add);
+        channel.sendAcknowledged(new byte[]{2}, results::add);
+        channel.setReady(true);
+        assertTrue(channel.isBusy());
+        assertEquals(Long.valueOf(CommandChannel.WRITE_TIMEOUT_MILLIS), scheduler.delays.get(0));
+
+        scheduler.runPending();
+        assertEquals(Collections.singletonList(false), results);
+        assertEquals(1, channel.getWritesTimedOut());
+        assertEquals(2, transport.values.size());
+
+        channel.onWriteComplete(true);
+        scheduler.runPending();
+        assertEquals(Arrays.asList(false, true), results);
+        assertEquals(1, channel.getWritesTimedOut());
+    }
+
+    @Test
+    public void coalescedCommands_shareTheWriteResult() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        channel.send(new byte[]{1}, results::add);
+        channel.send(new byte[]{2}, results::add);
+        channel.setReady(true);
+        channel.onWriteComplete(false);
+
+        assertEquals(Arrays.asList(false, false), results);
+        assertEquals(1, channel.getWritesFailed());
+    }
+
+    @Test
+    public void close_failsQueuedCommands() {
+        CommandChannel channel = channel(CommandChannel.NO_FLOW_CONTROL);
+        channel.send(new byte[]{1}, results::add);
+        channel.close();
+        assertEquals(Collections.singletonList(false), results);
+        channel.setReady(true);
+
+        assertTrue(transport.values.isEmpty());
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CsvWriterTest {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final CsvWriter csv = new CsvWriter(Channels.newChannel(bytes), 6);
+
+    private String written() throws IOException {
+        csv.flush();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void numbers_areFormattedWithoutTrailingZeros() throws IOException {
+        csv.field(0L).field(-42L).field(Long.MAX_VALUE).field(Long.MIN_VALUE).endRow();
+        csv.field(1.5).field(-0.000125).field(3.0).field(-0.0000001).field(123456.7890125).endRow();
+
+        assertEquals("0,-42,9223372036854775807,-9223372036854775808\n"
+                + "1.5,-0.000125,3,0,123456.789013\n", written());
+    }
+
+    @Test
+    public void specialValues_useEmptyFieldsOrFallbackText() throws IOException {
+        csv.field(Double.NaN).field(Double.POSITIVE_INFINITY).field(1e300).emptyField().endRow();
+
+        assertEquals(",Infinity,1.0E300,\n", written());
+    }
+
+    @Test
+    public void textWithSeparators_isQuoted() throws IOException {
+        csv.field("plain").field("a,b").field("say \"hi\"").endRow();
+
+        assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\"\n", written());
+    }
+
+    @Test
+    public void bytesWritten_includesBufferedOutput() throws IOException {
+        for (int i = 0; i < 20_000; i++) {
+            csv.field(i).field(i * 0.25).endRow();
+        }
+        long reported = csv.getBytesWritten();
+        assertEquals(written().length(), reported);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameAssemblerTest {
+    private static final long PERIOD = 1_000_000L;
+
+    private final List<byte[]> samples = new ArrayList<>();
+    private final List<Long> timestamps = new ArrayList<>();
+    private final FrameAssembler assembler = new FrameAssembler(2, PERIOD, 64,
+            (buffer, offset, length, timestampNanos) -> {
+                samples.add(Arrays.copyOfRange(buffer, offset, offset + length));
+                timestamps.add(timestampNanos);
+            });
+
+    private static byte[] notification(int flags, int sequence, int... payload) {
+        byte[] value = new byte[FrameAssembler.HEADER_SIZE + payload.length];
+        value[0] = (byte) flags;
+        value[1] = (byte) sequence;
+        for (int i = 0; i < payload.length; i++) {
+            value[FrameAssembler.HEADER_SIZE + i] = (byte) payload[i];
+        }
+        return value;
+    }
+
+    @Test
+    public void singleNotificationFrame_isUnpackedIntoTimestampedSamples() {
+        int flags = FrameAssembler.FLAG_START | FrameAssembler.FLAG_END;
+        assembler.onNotification(notification(flags, 0, 1, 2, 3, 4, 5, 6), 10 * PERIOD);
+
+        assertEquals(3, samples.size());
+        assertArrayEquals(new byte[]{1, 2}, samples.get(0));
+        assertArrayEquals(new byte[]{5, 6}, samples.get(2));
+        assertEquals(Long.valueOf(8 * PERIOD), timestamps.get(0));
+        assertEquals(Long.valueOf(10 * PERIOD), timestamps.get(2));
+        assertEquals(1, assembler.getFramesCompleted());
+    }
+
+    @Test
+    public void framesArrivingInOneConnectionEvent_keepTimestampsIncreasing() {
+        int flags = FrameAssembler.FLAG_START | FrameAssembler.FLAG_END;
+        int[] payload = new int[20];
+        int sequence = 0;
+        // 10 samples per notification at 1 kHz, three notifications delivered together every 30 ms.
+        for (int event = 1; event <= 100; event++) {
+            long arrival = event * 30 * PERIOD;
+            for (int n = 0; n < 3; n++) {
+                assembler.onNotification(notification(flags, sequence++ & 0xFF, payload), arrival);
+            }
+        }
+
+        assertEquals(3000, timestamps.size());
+        for (int i = 1; i < timestamps.size(); i++) {
+            assertTrue("timestamp " + i + " went backwards", timestamps.get(i) > timestamps.get(i - 1));
+        }
+        assertEquals(PERIOD, timestamps.get(15) - timestamps.get(14));
+    }
+
+    @Test
+    public void fastSensor_doesNotRunAheadOfArrivalTimes() {
+        int flags = FrameAssembler.FLAG_START | FrameAssembler.FLAG_END;
+        int[] payload = new int[20];
+        long arrival = 0;
+        // 10 nominal 1 ms samples every 9.95 ms: the sensor clock runs 0.5% fast.
+        for (int frame = 0; frame < 2000; frame++) {
+            arrival += 9_950_000L;
+            assembler.onNotification(notification(flags, frame & 0xFF, payload), arrival);
+        }
+
+        long lead = timestamps.get(timestamps.size() - 1) - arrival;
+        assertTrue("lead " + lead, lead <= 2 * 10 * PERIOD);
+        for (int i = 1; i < timestamps.size(); i++) {
+            assertTrue(timestamps.get(i) > timestamps.get(i - 1));
+        }
+    }
+
+    @Test
+    public void framesAfterALongDropout_areNotDiscarded() {
+        int flags = FrameAssembler.FLAG_START | FrameAssembler.FLAG_END;
+        for (int n = 0; n < 10; n++) {
+            assembler.onNotification(notification(flags, n, 1, 2), n * PERIOD);
+        }
+        for (int n = 210; n < 270; n++) {
+            assembler.onNotification(notification(flags, n & 0xFF, 1, 2), n * PERIOD);
+        }
+
+        assertEquals(70, samples.size());
+        assertEquals(0, assembler.getFragmentsDiscarded());
+        assertEquals(200, assembler.getSequenceTracker().getLost());
+    }
+
+    @Test
+    public void frameAfterAPause_isStampedFromItsArrival() {
+        int flags = FrameAssembler.FLAG_START | FrameAssembler.FLAG_END;
+        assembler.onNotification(notification(flags, 0, 1, 2, 3, 4), 10 * PERIOD);
+        assembler.onNotification(notification(flags, 1, 1, 2, 3, 4), 100 * PERIOD);
+
+        assertEquals(Long.valueOf(99 * PERIOD), timestamps.get(2));
+        assertEquals(Long.valueOf(100 * PERIOD), timestamps.get(3));
+    }
+
+    @Test
+    public void splitFrame_isReassembled() {
+        assembler.onNotification(notification(FrameAssembler.FLAG_START, 0, 1, 2, 3), 0);
+        assembler.onNotification(notification(0, 1, 4, 5), 0);
+        assertTrue(samples.isEmpty());
+        assembler.onNotification(notification(FrameAssembler.FLAG_END, 2, 6), 0);
+
+        assertEquals(3, samples.size());
+        assertArrayEquals(new byte[]{3, 4}, samples.get(1));
+        assertArrayEquals(new byte[]{5, 6}, samples.get(2));
+    }
+
+    @Test
+    public void gapInsideFrame_dropsTheFrame() {
+        assembler.onNotification(notification(FrameAssembler.FLAG_START, 0, 1, 2), 0);
+        assembler.onNotification(notification(FrameAssembler.FLAG_END, 2, 3, 4), 0);
+
+        assertTrue(samples.isEmpty());
+        assertEquals(1, assembler.getFramesDropped());
+        assertEquals(1, assembler.getFragmentsDiscarded());
+        assertEquals(1, assembler.getSequenceTracker().getLost());
+    }
+
+    @Test
+    public void duplicateNotification_isIgnored() {
+        int flags = FrameAssembler.FLAG_START | FrameAssembler.FLAG_END;
+        assembler.onNotification(notification(flags, 7, 1, 2), 0);
+        assembler.onNotification(notification(flags, 7, 1, 2), 0);
+
+        assertEquals(1, samples.size());
+        assertEquals(1, assembler.getSequenceTracker().getDuplicates());
+    }
+
+    @Test
+    public void oversizedFrame_isDropped() {
+        assembler.onNotification(notification(FrameAssembler.FLAG_START, 0, new int[40]), 0);
+        assembler.onNotification(notification(FrameAssembler.FLAG_END, 1, new int[40]), 0);
+
+        assertTrue(samples.isEmpty());
+        assertEquals(1, assembler.getFramesDropped());
+    }
+
+    @Test
+    public void deviceTime_stampsSamplesOnceClockIsSynchronized() {
+        ClockSync clockSync = new ClockSync(1000.0, 16, 2);
+        FrameAssembler timed = new FrameAssembler(2, PERIOD, 64, clockSync,
+                (buffer, offset, length, timestampNanos) -> timestamps.add(timestampNanos));
+        int flags = FrameAssembler.FLAG_START | FrameAssembler.FLAG_END | FrameAssembler.FLAG_DEVICE_TIME;
+
+        // Ticks 1000 and 2000 (1 us each) arrive with 3 ms and 5 ms of radio delay.
+        timed.onNotification(notification(flags, 0, 0xE8, 0x03, 0, 0, 1, 2), 4_000_000L);
+        timed.onNotification(notification(flags, 1, 0xD0, 0x07, 0, 0, 1, 2, 3, 4), 7_000_000L);
+
+        assertTrue(clockSync.isSynchronized());
+        assertEquals(Long.valueOf(4_000_000L), timestamps.get(0));
+        assertEquals(Long.valueOf(7_000_000L - PERIOD), timestamps.get(1));
+        assertEquals(Long.valueOf(7_000_000L), timestamps.get(2));
+        assertEquals(3, timed.getSamplesEmitted());
+    }
+
+    @Test
+    public void truncatedNotification_isMalformed() {
+        assembler.onNotification(new byte[]{(byte) FrameAssembler.FLAG_START}, 0);
+        assertEquals(1, assembler.getMalformedNotifications());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.datareader;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Merge throughput of {@link FusionEngine} for 2 to 16 streams of 3-channel samples at 1 kHz,
+ * with one sample in eight arriving after its successor. Not part of the unit tests; run its
+ * {@code main} from the IDE. Each stream count is run once to warm up and then measured.
+ */
+public class FusionEngineBenchmark {
+    private static final long MS = 1_000_000L;
+    private static final int TOTAL_SAMPLES = 2_000_000;
+
+    private static final PayloadSchema SCHEMA = new PayloadSchema("bench", UUID.randomUUID(), UUID.randomUUID(),
+            true, Arrays.asList(new PayloadSchema.Field("x", FieldType.INT16, 1.0, ""),
+                    new PayloadSchema.Field("y", FieldType.INT16, 1.0, ""),
+                    new PayloadSchema.Field("z", FieldType.INT16, 1.0, "")),
+            false, 0, 0, 0);
+
+    public static void main(String[] args) {
+        for (int streamCount = 2; streamCount <= 16; streamCount *= 2) {
+            run(streamCount);
+            long start = System.nanoTime();
+            FusionEngine engine = run(streamCount);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%2d streams: %.2fM samples/s, %d late, %d reordered%n", streamCount,
+                    engine.getMergedSamples() * 1e3 / elapsed, engine.getLateSamples(), engine.getReorderedSamples());
+        }
+    }
+
+    private static FusionEngine run(int streamCount) {
+        FusionEngine engine = new FusionEngine(MS, MS, 50 * MS, FusionEngine.Interpolation.LINEAR, 1024,
+                new FusionEngine.Listener() {
+                    @Override
+                    public void onMergedSample(int streamIndex, String streamId, long timestampNanos, double[] values) {
+                    }
+
+                    @Override
+                    public void onRow(long timestampNanos, double[] row) {
+                    }
+                });
+        String[] ids = new String[streamCount];
+        for (int stream = 0; stream < streamCount; stream++) {
+            ids[stream] = "s" + stream;
+            engine.addStream(ids[stream], SCHEMA);
+        }
+        Random random = new Random(streamCount);
+        double[] value = {1.0, 2.0, 3.0};
+        int samplesPerStream = TOTAL_SAMPLES / streamCount;
+        for (int i = 0; i < samplesPerStream; i += 2) {
+            for (int stream = 0; stream < streamCount; stream++) {
+                long t = i * MS + stream * 10_000L;
+                boolean swapped = random.nextInt(4) == 0;
+                engine.onSample(ids[stream], SCHEMA, swapped ? t + MS : t, value);
+                engine.onSample(ids[stream], SCHEMA, swapped ? t : t + MS, value);
+            }
+        }
+        engine.flush();
+        return engine;
+    }
+}
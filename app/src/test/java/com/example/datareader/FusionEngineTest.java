@@ -0,0 +1,244 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class FusionEngineTest {
+    private static final long MS = 1_000_000L;
+
+    private static final PayloadSchema SCHEMA = new PayloadSchema("test", UUID.randomUUID(), UUID.randomUUID(),
+            true, Collections.singletonList(new PayloadSchema.Field("x", FieldType.INT16, 1.0, "")),
+            false, 0, 0, 0);
+
+    private static class Recorder implements FusionEngine.Listener {
+        final List<Long> mergedTimes = new ArrayList<>();
+        final List<Long> rowTimes = new ArrayList<>();
+        final List<double[]> rows = new ArrayList<>();
+
+        @Override
+        public void onMergedSample(int streamIndex, String streamId, long timestampNanos, double[] values) {
+            mergedTimes.add(timestampNanos);
+        }
+
+        @Override
+        public void onRow(long timestampNanos, double[] row) {
+            rowTimes.add(timestampNanos);
+            rows.add(row.clone());
+        }
+    }
+
+    private static void sample(FusionEngine engine, String stream, long timestampNanos, double value) {
+        engine.onSample(stream, SCHEMA, timestampNanos, new double[]{value});
+    }
+
+    @Test
+    public void interleavedBursts_areMergedInTimestampOrder() {
+        for (int streamCount = 2; streamCount <= 16; streamCount *= 2) {
+            Recorder recorder = new Recorder();
+            FusionEngine engine = new FusionEngine(10 * MS, 5 * MS, 100 * MS,
+                    FusionEngine.Interpolation.ZERO_ORDER_HOLD, 256, recorder);
+            Random random = new Random(streamCount);
+
+            // Each stream delivers bursts of 1-8 samples, as multi-sample notifications do, with
+            // up to 20 ms of delivery delay per burst. Arrivals are then replayed in order.
+            List<long[]> arrivals = new ArrayList<>();
+            for (int stream = 0; stream < streamCount; stream++) {
+                engine.addStream("s" + stream, SCHEMA);
+                long period = MS + stream * 100_000L;
+                long timestamp = random.nextInt((int) MS);
+                long lastArrival = 0;
+                for (int sent = 0; sent < 200; ) {
+                    int burst = 1 + random.nextInt(8);
+                    long[] burstTimes = new long[burst];
+                    for (int i = 0; i < burst; i++) {
+                        timestamp += period;
+                        burstTimes[i] = timestamp;
+                    }
+                    lastArrival = Math.max(lastArrival, timestamp + random.nextInt((int) (20 * MS)));
+                    for (long burstTime : burstTimes) {
+                        arrivals.add(new long[]{lastArrival, stream, burstTime});
+                    }
+                    sent += burst;
+                }
+            }
+            arrivals.sort((a, b) -> Long.compare(a[0], b[0]));
+            for (long[] arrival : arrivals) {
+                sample(engine, "s" + arrival[1], arrival[2], 0.0);
+            }
+            engine.flush();
+
+            assertEquals(arrivals.size(), recorder.mergedTimes.size());
+            for (int i = 1; i < recorder.mergedTimes.size(); i++) {
+                assertTrue(recorder.mergedTimes.get(i - 1) <= recorder.mergedTimes.get(i));
+            }
+            assertEquals(0, engine.getLateSamples());
+            assertEquals(streamCount, engine.getStreamCount());
+            assertEquals(recorder.rowTimes.size(), engine.getRowsEmitted());
+        }
+    }
+
+    @Test
+    public void zeroOrderHold_usesLastSampleWithinSkew() {
+        Recorder recorder = new Recorder();
+        FusionEngine engine = new FusionEngine(10 * MS, 6 * MS, 100 * MS,
+                FusionEngine.Interpolation.ZERO_ORDER_HOLD, 16, recorder);
+        engine.addStream("a", SCHEMA);
+        engine.addStream("b", SCHEMA);
+        sample(engine, "a", 7 * MS, 1.0);
+        sample(engine, "b", 9 * MS, 2.0);
+        sample(engine, "a", 17 * MS, 3.0);
+        sample(engine, "b", 40 * MS, 4.0);
+        sample(engine, "a", 40 * MS, 5.0);
+
+        assertEquals(List.of(10 * MS, 20 * MS, 30 * MS), recorder.rowTimes);
+        assertArrayEquals(new double[]{1.0, 2.0}, recorder.rows.get(0), 0.0);
+        assertArrayEquals(new double[]{3.0, Double.NaN}, recorder.rows.get(1), 0.0);
+        assertArrayEquals(new double[]{Double.NaN, Double.NaN}, recorder.rows.get(2), 0.0);
+        assertEquals(List.of("a.x", "b.x"), engine.getColumnNames());
+    }
+
+    @Test
+    public void linear_interpolatesBetweenNeighbours() {
+        Recorder recorder = new Recorder();
+        FusionEngine engine = new FusionEngine(10 * MS, 8 * MS, 100 * MS,
+                FusionEngine.Interpolation.LINEAR, 16, recorder);
+        sample(engine, "a", 6 * MS, 0.0);
+        sample(engine, "a", 14 * MS, 8.0);
+        sample(engine, "a", 30 * MS, 0.0);
+
+        assertEquals(10 * MS, (long) recorder.rowTimes.get(0));
+        assertEquals(4.0, recorder.rows.get(0)[0], 1e-9);
+        // 20 ms: previous sample is 6 ms away, next is 10 ms away and outside the skew.
+        assertEquals(8.0, recorder.rows.get(1)[0], 1e-9);
+    }
+
+    @Test
+    public void stalledStream_stopsBlockingAfterMaxLatency() {
+        Recorder recorder = new Recorder();
+        FusionEngine engine = new FusionEngine(10 * MS, 0, 50 * MS,
+                FusionEngine.Interpolation.ZERO_ORDER_HOLD, 64, recorder);
+        engine.addStream("slow", SCHEMA);
+        sample(engine, "fast", 10 * MS, 1.0);
+        sample(engine, "fast", 40 * MS, 1.0);
+        assertTrue(recorder.mergedTimes.isEmpty());
+
+        sample(engine, "fast", 70 * MS, 1.0);
+        assertEquals(List.of(10 * MS), recorder.mergedTimes);
+
+        sample(engine, "slow", 5 * MS, 2.0);
+        assertEquals(1, engine.getLateSamples());
+    }
+
+    @Test
+    public void fullBuffer_forcesTheMerge() {
+        Recorder recorder = new Recorder();
+        FusionEngine engine = new FusionEngine(10 * MS, 0, Long.MAX_VALUE / 2,
+                FusionEngine.Interpolation.ZERO_ORDER_HOLD, 4, recorder);
+        engine.addStream("silent", SCHEMA);
+        for (int i = 1; i <= 10; i++) {
+            sample(engine, "busy", i * MS, i);
+        }
+        assertEquals(6, recorder.mergedTimes.size());
+    }
+
+    @Test
+    public void outOfOrderSamplesWithinAStream_areReorderedInsteadOfDropped() {
+        Recorder recorder = new Recorder();
+        FusionEngine engine = new FusionEngine(10 * MS, 0, 50 * MS,
+                FusionEngine.Interpolation.ZERO_ORDER_HOLD, 64, recorder);
+        engine.addStream("a", SCHEMA);
+        engine.addStream("b", SCHEMA);
+        sample(engine, "a", 10 * MS, 1.0);
+        sample(engine, "a", 30 * MS, 3.0);
+        sample(engine, "a", 20 * MS, 2.0);
+        sample(engine, "b", 25 * MS, 4.0);
+        sample(engine, "b", 40 * MS, 5.0);
+        assertEquals(List.of(10 * MS, 20 * MS), recorder.mergedTimes);
+
+        // "a" has been seen 10 ms out of order, so the merge waits for it up to 20 ms.
+        sample(engine, "a", 22 * MS, 6.0);
+        engine.flush();
+
+        assertEquals(List.of(10 * MS, 20 * MS, 22 * MS, 25 * MS, 30 * MS, 40 * MS), recorder.mergedTimes);
+        assertEquals(2, engine.getReorderedSamples());
+        assertEquals(0, engine.getLateSamples());
+    }
+
+    @Test
+    public void swappedSamples_inTwoToSixteenStreams_areMergedInOrder() {
+        for (int streamCount = 2; streamCount <= 16; streamCount *= 2) {
+            Recorder recorder = new Recorder();
+            FusionEngine engine = new FusionEngine(MS, MS, 50 * MS,
+                    FusionEngine.Interpolation.LINEAR, 1024, recorder);
+            Random random = new Random(streamCount);
+            String[] ids = new String[streamCount];
+            for (int stream = 0; stream < streamCount; stream++) {
+                ids[stream] = "s" + stream;
+                engine.addStream(ids[stream], SCHEMA);
+            }
+
+            // 1 kHz per stream; one sample in eight arrives after its successor. Until the engine
+            // has seen that, a stream's first swapped sample may already be behind the watermark.
+            int samplesPerStream = 40_000 / streamCount;
+            double[] value = {0.0};
+            for (int i = 0; i < samplesPerStream; i += 2) {
+                for (int stream = 0; stream < streamCount; stream++) {
+                    long t = i * MS + stream * 10_000L;
+                    if (random.nextInt(4) == 0) {
+                        engine.onSample(ids[stream], SCHEMA, t + MS, value);
+                        engine.onSample(ids[stream], SCHEMA, t, value);
+                    } else {
+                        engine.onSample(ids[stream], SCHEMA, t, value);
+                        engine.onSample(ids[stream], SCHEMA, t + MS, value);
+                    }
+                }
+            }
+            engine.flush();
+
+            long total = (long) samplesPerStream * streamCount;
+            assertEquals(total, engine.getMergedSamples() + engine.getLateSamples());
+            assertTrue(engine.getLateSamples() <= streamCount);
+            assertTrue(engine.getReorderedSamples() > 0);
+            for (int i = 1; i < recorder.mergedTimes.size(); i++) {
+                assertTrue(recorder.mergedTimes.get(i - 1) <= recorder.mergedTimes.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void longFrames_areNotLateWhenTheLatencyCoversTheFrame() {
+        PayloadSchema framed = new PayloadSchema("framed", UUID.randomUUID(), UUID.randomUUID(), true,
+                Collections.singletonList(new PayloadSchema.Field("x", FieldType.INT16, 1.0, "")),
+                true, 10 * MS, 64, 0);
+        assertEquals(320 * MS, framed.getMaxFrameDurationNanos());
+
+        Recorder recorder = new Recorder();
+        FusionEngine engine = new FusionEngine(10 * MS, 5 * MS, framed.getMaxFrameDurationNanos() + 200 * MS,
+                FusionEngine.Interpolation.ZERO_ORDER_HOLD, 4096, recorder);
+        engine.addStream("fast", SCHEMA);
+        engine.addStream("framed", framed);
+        // A 1 kHz stream, and a 100 Hz one whose 32-sample frames are stamped back from their arrival.
+        for (long t = 1; t <= 3000; t++) {
+            sample(engine, "fast", t * MS, 0.0);
+            if (t % 320 == 0) {
+                for (long s = t - 310; s <= t; s += 10) {
+                    engine.onSample("framed", framed, s * MS, new double[]{1.0});
+                }
+            }
+            if (t % 250 == 0) {
+                engine.advanceTo(t * MS);
+            }
+        }
+        engine.flush();
+
+        assertEquals(0, engine.getLateSamples());
+        assertEquals(3000 + 9 * 32, engine.getMergedSamples());
+    }
+}
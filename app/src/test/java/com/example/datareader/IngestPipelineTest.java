@@ -0,0 +1,112 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IngestPipelineTest {
+    private static final UUID SERVICE = UUID.fromString("ea07beb5-483e-36e1-4688-b7f5ea61914b");
+
+    private static PayloadSchema schema(String name, int index) {
+        return new PayloadSchema(name, SERVICE, new UUID(0x4f4bc5c9c3318fccL, index), true,
+                Collections.singletonList(new PayloadSchema.Field("value", FieldType.UINT16, 1.0, "")),
+                false, 0, 0, 0);
+    }
+
+    @Test
+    public void samples_reachProcessorsAndSinksInOrderPerStream() throws InterruptedException {
+        IngestPipeline pipeline = new IngestPipeline(1, 2, 2, 1, 32_768, 16);
+        Map<String, List<Long>> processed = new ConcurrentHashMap<>();
+        Map<String, List<Double>> persisted = new ConcurrentHashMap<>();
+        pipeline.addProcessor((streamId, schema, timestampNanos, values) ->
+                processed.computeIfAbsent(streamId, k -> Collections.synchronizedList(new ArrayList<>())).add(timestampNanos));
+        pipeline.addSink((streamId, schema, timestampNanos, values) ->
+                persisted.computeIfAbsent(streamId, k -> Collections.synchronizedList(new ArrayList<>())).add(values[0]));
+
+        List<PayloadSchema> schemas = new ArrayList<>();
+        for (int s = 0; s < 4; s++) {
+            schemas.add(schema("s" + s, s));
+            pipeline.openStream("AA:BB", schemas.get(s));
+        }
+        for (int i = 0; i < 5_000; i++) {
+            for (PayloadSchema schema : schemas) {
+                assertTrue(pipeline.submit(new SensorPacket(schema.characteristicUuid,
+                        new byte[]{(byte) i, (byte) (i >>> 8)}, i * 1000L)));
+            }
+        }
+        assertTrue(pipeline.submit(new SensorPacket(UUID.randomUUID(), new byte[]{1, 2}, 0)));
+        assertTrue(pipeline.close(10, TimeUnit.SECONDS));
+
+        assertEquals(4, processed.size());
+        for (PayloadSchema schema : schemas) {
+            List<Long> timestamps = processed.get("AA:BB/" + schema.name);
+            List<Double> values = persisted.get("AA:BB/" + schema.name);
+            assertEquals(5_000, timestamps.size());
+            assertEquals(5_000, values.size());
+            for (int i = 0; i < 5_000; i++) {
+                assertEquals(i * 1000L, (long) timestamps.get(i));
+                assertEquals(i, values.get(i), 0.0);
+            }
+        }
+        assertEquals(1, pipeline.getUnknownPackets());
+        for (PipelineStage<?> stage : pipeline.getStages()) {
+            assertEquals(0, stage.getQueueDepth());
+            assertEquals(0, stage.getFailures());
+        }
+        assertEquals(20_000, pipeline.getStages().get(3).getItemsProcessed());
+    }
+
+    @Test
+    public void submit_returnsImmediatelyWhenDownstreamIsStalled() throws InterruptedException {
+        IngestPipeline pipeline = new IngestPipeline(1, 1, 1, 1, 8, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.addSink((streamId, schema, timestampNanos, values) -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        PayloadSchema schema = schema("s", 0);
+        pipeline.openStream("AA:BB", schema);
+
+        int accepted = 0;
+        long slowestNanos = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long start = System.nanoTime();
+            if (pipeline.submit(new SensorPacket(schema.characteristicUuid, new byte[]{1, 2}, i))) {
+                accepted++;
+            }
+            slowestNanos = Math.max(slowestNanos, System.nanoTime() - start);
+        }
+
+        assertTrue("slowest submit took " + slowestNanos + " ns", slowestNanos < TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(pipeline.getDroppedNotifications() > 0);
+        assertEquals(10_000, accepted + pipeline.getDroppedNotifications());
+        String ingestLine = pipeline.summary().split("\n")[0];
+        assertTrue(ingestLine, ingestLine.endsWith("dropped " + pipeline.getDroppedNotifications()));
+        release.countDown();
+        assertTrue(pipeline.close(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void summary_hasOneLinePerStage() throws InterruptedException {
+        IngestPipeline pipeline = new IngestPipeline(1, 1, 1, 1, 16, 8);
+        pipeline.summary();
+        String[] lines = pipeline.summary().split("\n");
+        pipeline.close(10, TimeUnit.SECONDS);
+
+        assertEquals(4, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("ingest x1: queue 0"));
+        assertTrue(lines[3], lines[3].startsWith("persist x1"));
+    }
+}
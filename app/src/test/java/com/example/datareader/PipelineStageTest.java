@@ -0,0 +1,133 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PipelineStageTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void itemsWithTheSameKey_keepTheirOrder() throws InterruptedException {
+        Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+        PipelineStage<int[]> stage = new PipelineStage<>("test", 4, 64, 16, item -> item[0], () -> batch -> {
+            for (int[] item : batch) {
+                seen.computeIfAbsent(item[0], k -> Collections.synchronizedList(new ArrayList<>())).add(item[1]);
+            }
+        });
+        List<int[]> batch = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            batch.add(new int[]{i % 7, i});
+            if (batch.size() == 50) {
+                assertTrue(stage.submitAll(batch));
+                batch.clear();
+            }
+        }
+        stage.close();
+        assertTrue(stage.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(7, seen.size());
+        for (Map.Entry<Integer, List<Integer>> entry : seen.entrySet()) {
+            List<Integer> values = entry.getValue();
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(entry.getKey() + i * 7, (int) values.get(i));
+            }
+        }
+        assertEquals(10_000, stage.getItemsProcessed());
+        assertEquals(0, stage.getQueueDepth());
+    }
+
+    @Test
+    public void queuedItems_areHandedOverAsOneBatch() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        PipelineStage<Integer> stage = new PipelineStage<>("test", 1, 100, 32, item -> item, () -> batch -> {
+            batchSizes.add(batch.size());
+            awaitQuietly(release);
+        });
+        stage.submit(0);
+        while (stage.getQueueDepth() > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 1; i <= 40; i++) {
+            stage.submit(i);
+        }
+        release.countDown();
+        stage.close();
+        assertTrue(stage.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(1, 32, 8), batchSizes);
+        assertEquals(41.0 / 3, stage.snapshot().getMeanBatchSize(), 1e-9);
+    }
+
+    @Test
+    public void fullQueue_blocksTheSubmitterAndCountsStallTime() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        PipelineStage<Integer> stage = new PipelineStage<>("test", 1, 4, 4, item -> item, () -> batch -> awaitQuietly(release));
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                stage.submit(i);
+            }
+        });
+        submitter.start();
+        Thread.sleep(50);
+        assertTrue(submitter.isAlive());
+        assertEquals(4, stage.getQueueDepth());
+
+        release.countDown();
+        submitter.join(TIMEOUT_SECONDS * 1000);
+        stage.close();
+        assertTrue(stage.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(20, stage.getItemsProcessed());
+        assertTrue(stage.getStallNanos() >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void closedStage_rejectsItemsButDrainsQueuedOnes() throws InterruptedException {
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        PipelineStage<Integer> stage = new PipelineStage<>("test", 2, 16, 4, item -> item, () -> processed::addAll);
+        stage.submitAll(Arrays.asList(1, 2, 3, 4, 5));
+        stage.close();
+
+        assertFalse(stage.submit(6));
+        assertTrue(stage.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(5, processed.size());
+        assertEquals(1, stage.getDropped());
+    }
+
+    @Test
+    public void failingBatch_isCountedAndTheWorkerContinues() throws InterruptedException {
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        PipelineStage<Integer> stage = new PipelineStage<>("test", 1, 16, 1, item -> item, () -> batch -> {
+            if (batch.get(0) == 2) {
+                throw new IllegalStateException("bad item");
+            }
+            processed.addAll(batch);
+        });
+        stage.submitAll(Arrays.asList(1, 2, 3));
+        stage.close();
+        assertTrue(stage.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(1, 3), processed);
+        assertEquals(1, stage.getFailures());
+        assertEquals("bad item", stage.getLastFailure().getMessage());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+    private static final int K = 200;
+    private static final double[] FRACTIONS = {0.01, 0.1, 0.5, 0.9, 0.95, 0.99};
+    // About three times the expected normalized rank error of 1.7 / k.
+    private static final double RANK_TOLERANCE = 0.025;
+
+    private static void assertRankAccurate(QuantileSketch sketch, double[] sorted) {
+        for (double fraction : FRACTIONS) {
+            double estimate = sketch.quantile(fraction);
+            int rank = Arrays.binarySearch(sorted, estimate);
+            assertTrue("estimate must be an input value", rank >= 0);
+            double error = Math.abs((double) rank / sorted.length - fraction);
+            assertTrue("rank error " + error + " at " + fraction, error <= RANK_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void quantiles_matchExactQuantilesWithinRankError() {
+        Random random = new Random(7);
+        double[] values = new double[200_000];
+        QuantileSketch sketch = new QuantileSketch(K);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian());
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.getCount());
+        assertRankAccurate(sketch, values);
+        assertEquals(values[0], sketch.getMin(), 0.0);
+        assertEquals(values[values.length - 1], sketch.quantile(1.0), 0.0);
+    }
+
+    @Test
+    public void retainedValues_stayBounded() {
+        QuantileSketch sketch = new QuantileSketch(K);
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.add(i);
+        }
+        assertTrue("retained " + sketch.getRetained(), sketch.getRetained() < 4 * K);
+    }
+
+    @Test
+    public void mergedSketches_coverBothInputs() {
+        Random random = new Random(11);
+        double[] values = new double[150_000];
+        QuantileSketch[] parts = {new QuantileSketch(K), new QuantileSketch(K), new QuantileSketch(K)};
+        for (int i = 0; i < values.length; i++) {
+            // Each part sees a differently shifted distribution, like separate devices.
+            int part = i % parts.length;
+            values[i] = random.nextGaussian() + part * 2;
+            parts[part].add(values[i]);
+        }
+        Arrays.sort(values);
+
+        QuantileSketch merged = new QuantileSketch(K);
+        for (QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+        assertEquals(values.length, merged.getCount());
+        assertRankAccurate(merged, values);
+    }
+
+    @Test
+    public void serializedSketch_answersTheSameQuantiles() throws IOException {
+        QuantileSketch sketch = new QuantileSketch(K);
+        for (int i = 0; i < 50_000; i++) {
+            sketch.add(i % 977);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+
+        QuantileSketch copy = QuantileSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertArrayEquals(sketch.quantiles(FRACTIONS), copy.quantiles(FRACTIONS), 0.0);
+    }
+
+    @Test
+    public void emptySketch_hasNoQuantiles() {
+        QuantileSketch sketch = new QuantileSketch(K);
+        sketch.add(Double.NaN);
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        assertEquals(0, sketch.getCount());
+    }
+
+    @Test
+    public void copy_answersTheSameQuantilesAndStaysIndependent() {
+        QuantileSketch sketch = new QuantileSketch(K);
+        for (int i = 0; i < 50_000; i++) {
+            sketch.add(i % 977);
+        }
+        QuantileSketch copy = sketch.copy();
+        assertArrayEquals(sketch.quantiles(FRACTIONS), copy.quantiles(FRACTIONS), 0.0);
+
+        for (int i = 0; i < 50_000; i++) {
+            sketch.add(5000);
+        }
+        assertEquals(50_000, copy.getCount());
+        assertEquals(976.0, copy.getMax(), 0.0);
+    }
+}
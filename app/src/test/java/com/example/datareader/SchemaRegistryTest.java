@@ -0,0 +1,143 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SchemaRegistryTest {
+    private static final UUID SERVICE = UUID.fromString("ea07beb5-483e-36e1-4688-b7f5ea61914b");
+    private static final UUID IMU = UUID.fromString("4f4bc5c9-c331-8fcc-459e-1fb54ffac201");
+    private static final UUID ENV = UUID.fromString("4f4bc5c9-c331-8fcc-459e-1fb54ffac202");
+    private static final UUID COMMAND = UUID.fromString("4f4bc5c9-c331-8fcc-459e-1fb54ffac203");
+    private static final UUID CREDITS = UUID.fromString("4f4bc5c9-c331-8fcc-459e-1fb54ffac204");
+
+    private static SchemaRegistry load(String text) throws IOException {
+        return SchemaRegistry.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static final String CONFIG =
+            "schemas=imu, env\n"
+            + "imu.service=" + SERVICE + "\n"
+            + "imu.characteristic=" + IMU + "\n"
+            + "imu.fields=ax:int16:0.001:g, ay:int16:0.001:g, temp:uint8\n"
+            + "imu.framed=true\n"
+            + "imu.samplePeriodUs=1000\n"
+            + "imu.clockTickUs=1\n"
+            + "env.service=" + SERVICE + "\n"
+            + "env.characteristic=" + ENV + "\n"
+            + "env.byteOrder=big\n"
+            + "env.fields=pressure:uint32:0.01:hPa, humidity:float32:1:%\n";
+
+    @Test
+    public void schemas_areLookedUpByCharacteristic() throws IOException {
+        SchemaRegistry registry = load(CONFIG);
+
+        assertEquals(2, registry.getSchemas().size());
+        PayloadSchema imu = registry.get(IMU);
+        assertEquals("imu", imu.name);
+        assertTrue(imu.framed);
+        assertEquals(1_000_000L, imu.samplePeriodNanos);
+        assertEquals(1000.0, imu.clockNanosPerTick, 0.0);
+        assertEquals(5, imu.getSampleSize());
+        assertEquals("g", imu.getFields().get(0).unit);
+        assertNull(registry.get(UUID.randomUUID()));
+    }
+
+    @Test
+    public void littleEndianFields_areDecodedAndScaled() throws IOException {
+        PayloadSchema imu = load(CONFIG).get(IMU);
+        double[] values = new double[imu.getChannelCount()];
+
+        imu.decode(new byte[]{0x7F, (byte) 0xE8, 0x03, (byte) 0xC8, (byte) 0xFF, (byte) 0xFF}, 1, values);
+
+        assertEquals(1.0, values[0], 1e-9);
+        assertEquals(-0.056, values[1], 1e-9);
+        assertEquals(255.0, values[2], 0.0);
+    }
+
+    @Test
+    public void bigEndianFields_areDecoded() throws IOException {
+        PayloadSchema env = load(CONFIG).get(ENV);
+        double[] values = new double[2];
+        int humidity = Float.floatToIntBits(42.5f);
+
+        env.decode(new byte[]{0, 1, (byte) 0x8B, (byte) 0xD2,
+                (byte) (humidity >>> 24), (byte) (humidity >>> 16), (byte) (humidity >>> 8), (byte) humidity}, 0, values);
+
+        assertEquals(1013.3, values[0], 1e-9);
+        assertEquals(42.5, values[1], 0.0);
+        assertFalse(env.littleEndian);
+    }
+
+    @Test
+    public void maxFrameDuration_coversTheLongestFramedSchema() throws IOException {
+        // imu: 512-byte frames of 5-byte samples at 1 kHz; env is not framed.
+        assertEquals(102_000_000L, load(CONFIG).getMaxFrameDurationNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldType_isRejected() throws IOException {
+        load("schemas=a\na.service=" + SERVICE + "\na.characteristic=" + IMU + "\na.fields=x:int24\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingCharacteristic_isRejected() throws IOException {
+        load("schemas=a\na.service=" + SERVICE + "\na.fields=x:int8\n");
+    }
+
+    @Test
+    public void emptyConfig_hasNoSchemas() throws IOException {
+        SchemaRegistry registry = load("");
+        assertTrue(registry.isEmpty());
+        assertNull(registry.getCommandEndpoint());
+    }
+
+    @Test
+    public void commandEndpoint_isParsed() throws IOException {
+        SchemaRegistry.CommandEndpoint endpoint = load(CONFIG
+                + "command.service=" + SERVICE + "\n"
+                + "command.characteristic=" + COMMAND + "\n"
+                + "command.credits=4\n"
+                + "command.creditCharacteristic=" + CREDITS + "\n").getCommandEndpoint();
+
+        assertEquals(SERVICE, endpoint.serviceUuid);
+        assertEquals(COMMAND, endpoint.characteristicUuid);
+        assertEquals(4, endpoint.initialCredits);
+        assertEquals(CREDITS, endpoint.creditCharacteristicUuid);
+    }
+
+    @Test
+    public void commandEndpoint_withoutCredits_isNotFlowControlled() throws IOException {
+        SchemaRegistry.CommandEndpoint endpoint = load(
+                "command.service=" + SERVICE + "\ncommand.characteristic=" + COMMAND + "\n").getCommandEndpoint();
+
+        assertEquals(CommandChannel.NO_FLOW_CONTROL, endpoint.initialCredits);
+        assertNull(endpoint.creditCharacteristicUuid);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void commandEndpoint_onADataCharacteristic_isRejected() throws IOException {
+        load(CONFIG + "command.service=" + SERVICE + "\ncommand.characteristic=" + IMU + "\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void creditCharacteristic_onADataCharacteristic_isRejected() throws IOException {
+        load(CONFIG + "command.service=" + SERVICE + "\ncommand.characteristic=" + COMMAND
+                + "\ncommand.creditCharacteristic=" + ENV + "\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void framedSchema_withoutSamplePeriod_isRejected() throws IOException {
+        load(CONFIG.replace("imu.samplePeriodUs=1000\n", ""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxFrameSize_smallerThanASample_isRejected() throws IOException {
+        load(CONFIG + "imu.maxFrameSize=4\n");
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SequenceTrackerTest {
+    @Test
+    public void consecutiveSequences_areInOrder() {
+        SequenceTracker tracker = new SequenceTracker();
+        for (int i = 0; i < 600; i++) {
+            assertEquals(SequenceTracker.IN_ORDER, tracker.track(i & 0xFF));
+        }
+        assertEquals(600, tracker.getReceived());
+        assertEquals(0, tracker.getLost());
+        assertEquals(0.0, tracker.getLossRate(), 0.0);
+    }
+
+    @Test
+    public void skippedSequences_areCountedAsLost() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.track(254);
+        tracker.track(255);
+        assertEquals(SequenceTracker.GAP, tracker.track(2));
+        assertEquals(2, tracker.getLost());
+        assertEquals(3, tracker.getReceived());
+        assertEquals(0.4, tracker.getLossRate(), 1e-9);
+    }
+
+    @Test
+    public void repeatedSequence_isDuplicate() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.track(10);
+        tracker.track(11);
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(11));
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(10));
+        assertEquals(2, tracker.getDuplicates());
+        assertEquals(2, tracker.getReceived());
+    }
+
+    @Test
+    public void lateSequence_isReorderedAndNoLongerLost() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.track(0);
+        tracker.track(2);
+        assertEquals(1, tracker.getLost());
+        assertEquals(SequenceTracker.REORDERED, tracker.track(1));
+        assertEquals(0, tracker.getLost());
+        assertEquals(1, tracker.getReordered());
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(1));
+    }
+
+    @Test
+    public void sequenceBeforeFirstSeen_isNotCountedAsRecovered() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.track(50);
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(49));
+        assertEquals(0, tracker.getLost());
+    }
+
+    @Test
+    public void longDropout_isCountedAsLossInsteadOfOldTraffic() {
+        SequenceTracker tracker = new SequenceTracker();
+        long interval = 10_000_000L;
+        for (int i = 0; i < 10; i++) {
+            tracker.track(i, i * interval, interval);
+        }
+        // 200 notifications lost: the next sequence looks 56 behind the last one seen.
+        assertEquals(SequenceTracker.GAP, tracker.track(210 & 0xFF, 210 * interval, interval));
+        for (int i = 211; i < 300; i++) {
+            assertEquals(SequenceTracker.IN_ORDER, tracker.track(i & 0xFF, i * interval, interval));
+        }
+
+        assertEquals(200, tracker.getLost());
+        assertEquals(100, tracker.getReceived());
+        assertEquals(0, tracker.getDuplicates());
+        assertEquals(200.0 / 300, tracker.getLossRate(), 1e-9);
+    }
+
+    @Test
+    public void dropoutLongerThanTheSequenceRange_isEstimatedFromTheElapsedTime() {
+        SequenceTracker tracker = new SequenceTracker();
+        long interval = 10_000_000L;
+        tracker.track(0, 0, interval);
+        // 700 later the counter has wrapped twice; jitter does not change the estimate.
+        assertEquals(SequenceTracker.GAP, tracker.track(700 & 0xFF, 700 * interval + interval / 3, interval));
+        assertEquals(699, tracker.getLost());
+    }
+
+    @Test
+    public void burstAfterADeliveryStall_isInOrder() {
+        SequenceTracker tracker = new SequenceTracker();
+        long interval = 10_000_000L;
+        for (int i = 0; i < 10; i++) {
+            tracker.track(i, i * interval, interval);
+        }
+        // The link stalls for 1.5 s, then the buffered notifications arrive back to back.
+        long burst = 9 * interval + 1_500_000_000L;
+        for (int i = 10; i < 20; i++) {
+            assertEquals(SequenceTracker.IN_ORDER, tracker.track(i, burst, interval));
+        }
+        assertEquals(0, tracker.getLost());
+        assertEquals(20, tracker.getReceived());
+    }
+
+    @Test
+    public void nextSequenceAfterAStreamingPause_isInOrder() {
+        SequenceTracker tracker = new SequenceTracker();
+        long interval = 10_000_000L;
+        tracker.track(0, 0, interval);
+        assertEquals(SequenceTracker.IN_ORDER, tracker.track(1, 5_000_000_000L, interval));
+        assertEquals(0, tracker.getLost());
+        assertEquals(0.0, tracker.getLossRate(), 0.0);
+    }
+
+    @Test
+    public void shortGapWithTiming_isUnchanged() {
+        SequenceTracker tracker = new SequenceTracker();
+        long interval = 10_000_000L;
+        tracker.track(0, 0, interval);
+        tracker.track(5, 5 * interval, interval);
+        assertEquals(SequenceTracker.DUPLICATE, tracker.track(5, 5 * interval, interval));
+        assertEquals(4, tracker.getLost());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SessionExporterTest {
+    private static final PayloadSchema IMU = new PayloadSchema("imu", UUID.randomUUID(), UUID.randomUUID(), true,
+            Arrays.asList(new PayloadSchema.Field("ax", FieldType.INT16, 0.001, "g"),
+                    new PayloadSchema.Field("ay", FieldType.INT16, 0.001, "g")),
+            false, 0, 0, 0);
+    private static final PayloadSchema TEMP = new PayloadSchema("temp", UUID.randomUUID(), UUID.randomUUID(), true,
+            Arrays.asList(new PayloadSchema.Field("t", FieldType.INT16, 0.1, "C")),
+            false, 0, 0, 0);
+
+    private static File recordSession(int imuSamples) throws IOException {
+        File file = File.createTempFile("session", SessionRecorder.FILE_EXTENSION);
+        file.deleteOnExit();
+        try (SessionRecorder recorder = new SessionRecorder(file)) {
+            recorder.onSample("dev/imu", IMU, 1000, new double[]{0.5, -0.25});
+            recorder.onSample("dev/temp", TEMP, 1500, new double[]{21.5});
+            for (int i = 1; i < imuSamples; i++) {
+                recorder.onSample("dev/imu", IMU, 1000 + i * 1000L, new double[]{i, -i});
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void recordedSession_isReadBack() throws IOException {
+        File file = recordSession(3);
+        try (SessionReader reader = new SessionReader(file)) {
+            assertEquals(2, reader.readStreams().size());
+            final StringBuilder seen = new StringBuilder();
+            reader.read(new SessionReader.Visitor() {
+                @Override
+                public void onStream(SessionReader.StreamInfo stream) {
+                    seen.append(stream.id).append(Arrays.toString(stream.channelNames)).append(';');
+                }
+
+                @Override
+                public void onSample(SessionReader.StreamInfo stream, long timestampNanos, double[] values) {
+                    seen.append(stream.index).append('@').append(timestampNanos).append(Arrays.toString(values)).append(';');
+                }
+            });
+            assertEquals("dev/imu[ax, ay];0@1000[0.5, -0.25];dev/temp[t];1@1500[21.5];"
+                    + "0@2000[1.0, -1.0];0@3000[2.0, -2.0];", seen.toString());
+        }
+    }
+
+    @Test
+    public void recordsAppendedWhileReading_areLeftOut() throws IOException {
+        File file = File.createTempFile("session", SessionRecorder.FILE_EXTENSION);
+        file.deleteOnExit();
+        try (SessionRecorder recorder = new SessionRecorder(file)) {
+            recorder.onSample("dev/imu", IMU, 1000, new double[]{0.5, -0.25});
+            recorder.flush();
+            try (SessionReader reader = new SessionReader(file)) {
+                assertEquals(1, reader.readStreams().size());
+
+                // A new stream flushed between the stream listing and the sample pass.
+                recorder.onSample("dev/temp", TEMP, 1500, new double[]{21.5});
+                recorder.onSample("dev/imu", IMU, 2000, new double[]{1.0, -1.0});
+                recorder.flush();
+
+                final StringBuilder seen = new StringBuilder();
+                reader.read(new SessionReader.Visitor() {
+                    @Override
+                    public void onStream(SessionReader.StreamInfo stream) {
+                        seen.append(stream.id).append(';');
+                    }
+
+                    @Override
+                    public void onSample(SessionReader.StreamInfo stream, long timestampNanos, double[] values) {
+                        seen.append(stream.index).append('@').append(timestampNanos).append(';');
+                    }
+                });
+                assertEquals("dev/imu;0@1000;", seen.toString());
+            }
+        }
+    }
+
+    @Test
+    public void truncatedSession_stopsAtLastCompleteRecord() throws IOException {
+        File file = recordSession(3);
+        byte[] content = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(content, content.length - 5));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SessionExporter.exportCsv(file, Channels.newChannel(out));
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+    }
+
+    @Test
+    public void csvExport_hasOneColumnPerStreamChannel() throws IOException {
+        File file = recordSession(2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        SessionExporter.Result result = SessionExporter.exportCsv(file, Channels.newChannel(out));
+
+        assertEquals("timestamp_ns,stream,dev/imu.ax,dev/imu.ay,dev/temp.t\n"
+                + "1000,dev/imu,0.5,-0.25,\n"
+                + "1500,dev/temp,,,21.5\n"
+                + "2000,dev/imu,1,-1,\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(out.size(), result.bytesWritten);
+    }
+
+    @Test
+    public void columnarExport_writesBlocksPerStream() throws IOException {
+        int samples = SessionExporter.BLOCK_ROWS + 10;
+        File file = recordSession(samples);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        SessionExporter.Result result = SessionExporter.exportColumnar(file, Channels.newChannel(out));
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(SessionExporter.COLUMNAR_MAGIC, in.getInt());
+        assertEquals(SessionExporter.COLUMNAR_VERSION, in.getShort());
+        assertEquals(2, in.getShort());
+        for (int stream = 0; stream < 2; stream++) {
+            skipString(in);
+            int channels = in.getShort();
+            for (int c = 0; c < channels; c++) {
+                skipString(in);
+            }
+        }
+        assertEquals(0, in.getShort());
+        assertEquals(SessionExporter.BLOCK_ROWS, in.getInt());
+        assertEquals(1000L, in.getLong());
+        // 1000 ns deltas zigzag to 2000: two varint bytes each.
+        assertEquals((byte) 0xD0, in.get());
+        assertEquals((byte) 0x0F, in.get());
+        in.position(in.position() + 2 * (SessionExporter.BLOCK_ROWS - 2));
+        assertEquals(0.5f, in.getFloat(), 0f);
+        assertEquals(1.0f, in.getFloat(), 0f);
+        assertEquals(out.size(), result.bytesWritten);
+        assertTrue(out.size() < Files.size(file.toPath()));
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        in.position(in.position() + length);
+    }
+
+    @Test
+    public void rawExport_copiesTheSessionFile() throws IOException {
+        File file = recordSession(100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        SessionExporter.Result result = SessionExporter.exportRaw(file, Channels.newChannel(out));
+
+        assertArrayEquals(Files.readAllBytes(file.toPath()), out.toByteArray());
+        assertEquals(file.length(), result.bytesWritten);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.datareader;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SessionStatisticsTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private static final PayloadSchema SCHEMA = new PayloadSchema("imu", UUID.randomUUID(), UUID.randomUUID(),
+            true, Collections.singletonList(new PayloadSchema.Field("x", FieldType.INT16, 1.0, "")),
+            false, 0, 0, 0);
+
+    @Test
+    public void summary_reportsSessionAndWindowStats() {
+        SessionStatistics statistics = new SessionStatistics(100, 4 * SECOND, 4);
+        for (int second = 0; second < 10; second++) {
+            statistics.onSample("imu", SCHEMA, second * SECOND, new double[]{second});
+        }
+
+        String summary = statistics.summary();
+        assertTrue(summary, summary.startsWith("imu.x: min 0.000 max 9.000 mean 4.500 sd 3.028 |"));
+        assertTrue(summary, summary.contains("| window min 6.000 max 9.000 mean 7.500 sd 1.291 |"));
+    }
+
+    @Test
+    public void mergingTwoSessionsIntoEachOther_doesNotDeadlock() throws InterruptedException {
+        SessionStatistics first = new SessionStatistics(100, 4 * SECOND, 4);
+        SessionStatistics second = new SessionStatistics(100, 4 * SECOND, 4);
+        first.onSample("imu", SCHEMA, 0, new double[]{1.0});
+        second.onSample("imu", SCHEMA, 0, new double[]{2.0});
+
+        Thread forward = new Thread(() -> {
+            for (int i = 0; i < 30; i++) {
+                first.merge(second);
+            }
+        });
+        Thread backward = new Thread(() -> {
+            for (int i = 0; i < 30; i++) {
+                second.merge(first);
+            }
+        });
+        forward.start();
+        backward.start();
+        forward.join(10_000);
+        backward.join(10_000);
+
+        assertFalse(forward.isAlive() || backward.isAlive());
+        assertEquals(1.0, first.getChannel("imu", 0).getSessionStats().getMin(), 0.0);
+        assertEquals(2.0, second.getChannel("imu", 0).getSessionStats().getMax(), 0.0);
+    }
+}